@@ -130,7 +130,7 @@ function getConfirmationStopIndexes(stops = [], preferredIndexes = []) {
 
 function AppContent() {
   const { isAuthenticated, currentUser, loading: authLoading } = useAuth();
-  const { refreshHistory, refreshRecentDestinations } = useHistory();
+  const { refreshHistory, refreshRecentDestinations, loadHistoryItem } = useHistory();
   const { addPlacesFromRoute } = useRecentPlaces();
   const [showLoginScreen, setShowLoginScreen] = useState(true);
   const [routeData, setRouteData] = useState(null);
@@ -155,6 +155,8 @@ function AppContent() {
   const [statusMessage, setStatusMessage] = useState(null);
   const locationWatchIdRef = useRef(null);
   const [transcript, setTranscript] = useState(null);
+  // Partial route built from /process-voice/stream events while the pipeline runs
+  const [previewRoute, setPreviewRoute] = useState(null);
 
   // Load last route from server on mount.
   // For authenticated users we try history first; for guests we use the file cache.
@@ -163,15 +165,17 @@ function AppContent() {
     if (authLoading) return; // wait until we know if user is logged in
 
     if (isAuthenticated) {
-      // Try history first; fall back to server cache if history is empty
+      // Try history first; fall back to server cache if history is empty.
+      // The list is a summary, so the latest entry's full route is fetched by id.
       fetch(`${API_BASE_URL}/history?limit=1`, { credentials: 'include' })
         .then((res) => res.json())
         .then((data) => {
-          const historyRoute = data.success && data.history?.[0]?.route;
-          if (historyRoute) {
-            setRouteData(historyRoute);
-            if (data.history[0].transcript) setTranscript(data.history[0].transcript);
-            return;
+          const latest = data.success && data.history?.[0];
+          if (latest) {
+            return loadHistoryItem(latest.id).then((item) => {
+              if (item?.route) setRouteData(item.route);
+              if (item?.transcript) setTranscript(item.transcript);
+            });
           }
           // History empty — fall back to server file cache
           return fetch(`${API_BASE_URL}/last-route`, { credentials: 'include' })
@@ -276,7 +280,7 @@ function AppContent() {
       const placement = resolvePlacement(preference, route);
       console.log(`Semantic placement: fraction=${placement.fraction}, label="${placement.label}", brand=${placement.brand}`);
 
-      const searchPoint = interpolateRoutePoint(route.stops, placement.fraction);
+      const searchPoint = interpolateRoutePoint(route.stops, placement.fraction, route.overview_polyline);
       if (!searchPoint) throw new Error('Could not determine search location');
 
       console.log(`Searching near (${searchPoint.lat.toFixed(4)}, ${searchPoint.lng.toFixed(4)}) — ${placement.label}`);
@@ -452,6 +456,21 @@ function AppContent() {
     }
   }, []);
 
+  const handleVoiceProgress = useCallback(({ event, data }) => {
+    if (event === 'transcript') {
+      if (data.transcript) setTranscript(data.transcript);
+      setPreviewRoute({ stops: [] });
+    } else if (event === 'stop') {
+      setPreviewRoute((prev) => {
+        const stops = [...(prev?.stops || [])];
+        stops[data.index] = data.stop;
+        return { ...prev, stops };
+      });
+    } else if (event === 'route') {
+      setPreviewRoute((prev) => ({ ...prev, ...data }));
+    }
+  }, []);
+
   const handleVoiceResult = useCallback((data) => {
     if (!data) return;
 
@@ -727,6 +746,8 @@ function AppContent() {
     setLoading(isLoading);
     if (isLoading) {
       setError(null);
+    } else {
+      setPreviewRoute(null);
     }
   }, []);
 
@@ -920,6 +941,7 @@ function AppContent() {
             onResult={handleVoiceResult}
             onError={handleError}
             onLoadingChange={handleLoadingChange}
+            onProgress={handleVoiceProgress}
             currentRoute={routeData}
             userLocation={userLocation}
           />
@@ -1013,6 +1035,7 @@ function AppContent() {
           {isLoaded && (
             <MapDisplay
               route={routeData}
+              previewRoute={previewRoute}
               onCoffeeShopsFound={handleCoffeeShopsFound}
               onAddCoffeeShop={handleModalAddShop}
             />
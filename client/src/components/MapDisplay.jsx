@@ -26,6 +26,11 @@ const polylineOptions = {
   strokeWeight: 5
 };
 
+const previewPolylineOptions = {
+  ...polylineOptions,
+  strokeOpacity: 0.5
+};
+
 // Colors for coffee shop markers grouped by stop index
 const STOP_COFFEE_COLORS = [
   '#22c55e', // Green - Stop 0 (origin)
@@ -40,7 +45,11 @@ function getStopColor(stopIndex) {
   return STOP_COFFEE_COLORS[stopIndex % STOP_COFFEE_COLORS.length];
 }
 
-function MapDisplay({ route, onCoffeeShopsFound, onAddCoffeeShop }) {
+function MapDisplay({ route: committedRoute, previewRoute = null, onCoffeeShopsFound, onAddCoffeeShop }) {
+  // While a streamed voice request is in flight, draw its stops/polyline as they arrive
+  const isPreview = Boolean(previewRoute?.stops?.some(Boolean));
+  const route = isPreview ? previewRoute : committedRoute;
+
   const [map, setMap] = useState(null);
   const [decodedPath, setDecodedPath] = useState([]);
   const [coffeeShops, setCoffeeShops] = useState([]);
@@ -319,7 +328,7 @@ function MapDisplay({ route, onCoffeeShopsFound, onAddCoffeeShop }) {
       >
         {/* Render route polyline */}
         {decodedPath.length > 0 && (
-          <Polyline path={decodedPath} options={polylineOptions} />
+          <Polyline path={decodedPath} options={isPreview ? previewPolylineOptions : polylineOptions} />
         )}
 
         {/* Render markers for each stop */}
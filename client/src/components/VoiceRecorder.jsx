@@ -1,7 +1,16 @@
 import { useState, useRef, useCallback } from 'react';
-import { API_BASE_URL } from '../config/api';
-
-function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null, userLocation = null }) {
+import {
+  processVoiceStream,
+  createVoiceSession,
+  uploadVoiceChunk,
+  finishVoiceSessionStream,
+  cancelVoiceSession
+} from '../services/voiceStreamService';
+
+// MediaRecorder emits a chunk this often; each one is uploaded while the user keeps talking
+const CHUNK_INTERVAL_MS = 1000;
+
+function VoiceRecorder({ onResult, onError, onLoadingChange, onProgress = () => {}, currentRoute = null, userLocation = null }) {
   const [isRecording, setIsRecording] = useState(false);
   const [isProcessing, setIsProcessing] = useState(false);
   const mediaRecorderRef = useRef(null);
@@ -38,11 +47,32 @@ function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null
     });
   }, [userLocation]);
 
-  const sendAudioToBackend = useCallback(async (audioBlob) => {
+  const sendAudioToBackend = useCallback(async (audioBlob, upload) => {
     setIsProcessing(true);
     onLoadingChange(true);
 
-    const locationHint = await resolveUserLocationHint();
+    // The whole recording already reached the server - only the pipeline is left to finish
+    if (upload.sessionId && !upload.failed) {
+      try {
+        const data = await finishVoiceSessionStream(upload.sessionId, onProgress);
+        console.log('Server response:', data);
+        onResult(data);
+      } catch (err) {
+        console.error('Error finishing voice session:', err);
+        onError(err.message || 'Failed to process voice input');
+      } finally {
+        setIsProcessing(false);
+        onLoadingChange(false);
+      }
+      return;
+    }
+
+    if (upload.sessionId) {
+      cancelVoiceSession(upload.sessionId);
+    }
+    console.log('⚠️ Chunked upload unavailable - sending the full recording');
+
+    const locationHint = await upload.locationPromise;
 
     console.log('🎤 Sending audio to backend with context:', {
       hasCurrentRoute: !!currentRoute,
@@ -70,29 +100,9 @@ function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null
         console.log('✅ User location added to FormData:', locationHint);
       }
 
-      const response = await fetch(`${API_BASE_URL}/process-voice`, {
-        method: 'POST',
-        credentials: 'include',
-        body: formData
-      });
-
-      const text = await response.text();
-      console.log('Server response:', text);
-
-      if (!text) {
-        throw new Error('Empty response from server');
-      }
-
-      let data;
-      try {
-        data = JSON.parse(text);
-      } catch (e) {
-        throw new Error(`Invalid JSON response: ${text.substring(0, 100)}`);
-      }
-
-      if (!response.ok) {
-        throw new Error(data.error || 'Failed to process audio');
-      }
+      // Stream stage events so the transcript and stops render before routing finishes
+      const data = await processVoiceStream(formData, onProgress);
+      console.log('Server response:', data);
 
       onResult(data);
     } catch (err) {
@@ -102,7 +112,7 @@ function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null
       setIsProcessing(false);
       onLoadingChange(false);
     }
-  }, [currentRoute, onLoadingChange, onResult, onError, resolveUserLocationHint]);
+  }, [currentRoute, onLoadingChange, onProgress, onResult, onError]);
 
   const startRecording = useCallback(async () => {
     try {
@@ -115,9 +125,35 @@ function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null
       mediaRecorderRef.current = mediaRecorder;
       chunksRef.current = [];
 
+      // Open a server session while recording starts, so chunks are transcribed and their
+      // stops geocoded before the user finishes speaking. Any failure falls back to one upload.
+      const locationPromise = resolveUserLocationHint();
+      const upload = { sessionId: null, failed: false, nextSeq: 0, locationPromise };
+      upload.pending = locationPromise
+        .then((locationHint) => createVoiceSession({
+          mimeType: mediaRecorder.mimeType,
+          currentRoute,
+          userLocation: locationHint
+        }))
+        .then((sessionId) => {
+          upload.sessionId = sessionId;
+        })
+        .catch((err) => {
+          console.warn('Could not start voice session:', err.message);
+          upload.failed = true;
+        });
+
       mediaRecorder.ondataavailable = (event) => {
         if (event.data.size > 0) {
           chunksRef.current.push(event.data);
+          const seq = upload.nextSeq++;
+          upload.pending = upload.pending.then(() => {
+            if (upload.failed) return;
+            return uploadVoiceChunk(upload.sessionId, seq, event.data).catch((err) => {
+              console.warn('Audio chunk upload failed:', err.message);
+              upload.failed = true;
+            });
+          });
         }
       };
 
@@ -127,17 +163,20 @@ function VoiceRecorder({ onResult, onError, onLoadingChange, currentRoute = null
         // Stop all tracks to release microphone
         stream.getTracks().forEach(track => track.stop());
 
+        // The final chunk is delivered just before onstop; wait for it to finish uploading
+        await upload.pending;
+
         // Send to backend
-        await sendAudioToBackend(audioBlob);
+        await sendAudioToBackend(audioBlob, upload);
       };
 
-      mediaRecorder.start();
+      mediaRecorder.start(CHUNK_INTERVAL_MS);
       setIsRecording(true);
     } catch (err) {
       console.error('Error accessing microphone:', err);
       onError('Could not access microphone. Please check permissions.');
     }
-  }, [onError, sendAudioToBackend]);
+  }, [currentRoute, onError, resolveUserLocationHint, sendAudioToBackend]);
 
   const stopRecording = useCallback(() => {
     if (mediaRecorderRef.current && isRecording) {
@@ -59,12 +59,26 @@ export function HistoryProvider({ children }) {
     }
   };
 
+  // The history list only carries summaries; load an entry's full route when it is opened
+  const loadHistoryItem = async (historyId) => {
+    const response = await fetch(`${API_BASE_URL}/history/${historyId}`, {
+      credentials: 'include'
+    });
+    const data = await response.json();
+
+    if (!data.success) {
+      throw new Error(data.error || 'Failed to load history item');
+    }
+    return data.history;
+  };
+
   const value = {
     history,
     recentDestinations,
     loading,
     refreshHistory,
-    refreshRecentDestinations
+    refreshRecentDestinations,
+    loadHistoryItem
   };
 
   return <HistoryContext.Provider value={value}>{children}</HistoryContext.Provider>;
@@ -50,13 +50,14 @@ export function resolvePlacement(preference, route) {
 }
 
 /**
- * Interpolate a point along the straight-line path between origin and destination
- * at a given fraction (0 → origin, 1 → destination).
+ * Interpolate a point along the route at a given fraction (0 → origin, 1 → destination).
  *
- * If the route has intermediate waypoints we walk the stop list proportionally
- * so the fraction better matches the actual path.
+ * When the route's encoded overview polyline is available (and the Maps geometry
+ * library is loaded) we walk the decoded road path, so the point lands on the
+ * road instead of on a straight chord between stops. Otherwise we walk the stop
+ * list proportionally using straight-line distances.
  */
-export function interpolateRoutePoint(stops, fraction) {
+export function interpolateRoutePoint(stops, fraction, encodedPolyline = null) {
   if (!stops || stops.length < 2) return null;
 
   if (fraction <= 0) return { lat: stops[0].lat, lng: stops[0].lng };
@@ -65,11 +66,25 @@ export function interpolateRoutePoint(stops, fraction) {
     return { lat: last.lat, lng: last.lng };
   }
 
+  const path = decodeRoutePath(encodedPolyline);
+  return interpolateAlongPath(path && path.length >= 2 ? path : stops, fraction);
+}
+
+function decodeRoutePath(encodedPolyline) {
+  const encoding = window.google?.maps?.geometry?.encoding;
+  if (!encodedPolyline || !encoding) return null;
+  return encoding.decodePath(encodedPolyline).map((latLng) => ({
+    lat: latLng.lat(),
+    lng: latLng.lng(),
+  }));
+}
+
+function interpolateAlongPath(points, fraction) {
   // Walk segment-by-segment using straight-line distances
   const segLengths = [];
   let totalLen = 0;
-  for (let i = 0; i < stops.length - 1; i++) {
-    const d = haversineKm(stops[i].lat, stops[i].lng, stops[i + 1].lat, stops[i + 1].lng);
+  for (let i = 0; i < points.length - 1; i++) {
+    const d = haversineKm(points[i].lat, points[i].lng, points[i + 1].lat, points[i + 1].lng);
     segLengths.push(d);
     totalLen += d;
   }
@@ -79,17 +94,17 @@ export function interpolateRoutePoint(stops, fraction) {
 
   for (let i = 0; i < segLengths.length; i++) {
     if (accumulated + segLengths[i] >= targetDist) {
-      const segFrac = (targetDist - accumulated) / segLengths[i];
+      const segFrac = segLengths[i] > 0 ? (targetDist - accumulated) / segLengths[i] : 0;
       return {
-        lat: stops[i].lat + (stops[i + 1].lat - stops[i].lat) * segFrac,
-        lng: stops[i].lng + (stops[i + 1].lng - stops[i].lng) * segFrac,
+        lat: points[i].lat + (points[i + 1].lat - points[i].lat) * segFrac,
+        lng: points[i].lng + (points[i + 1].lng - points[i].lng) * segFrac,
       };
     }
     accumulated += segLengths[i];
   }
 
   // Fallback
-  const last = stops[stops.length - 1];
+  const last = points[points.length - 1];
   return { lat: last.lat, lng: last.lng };
 }
 
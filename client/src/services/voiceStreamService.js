@@ -0,0 +1,145 @@
+import { API_BASE_URL } from '../config/api';
+
+/**
+ * Read an NDJSON stage stream: one JSON object per line (transcript, stop per stop, route),
+ * then a final result or error carrying the same body /process-voice would return.
+ *
+ * @param {Response} response - fetch response with an NDJSON body
+ * @param {Function} onEvent - Called with ({ event, data }) for each intermediate stage
+ * @returns {Promise<Object>} - Final response body
+ */
+async function readVoiceStream(response, onEvent) {
+  if (!response.ok || !response.body) {
+    throw new Error(await readErrorMessage(response, 'Failed to process audio'));
+  }
+
+  const reader = response.body.getReader();
+  const decoder = new TextDecoder();
+  let buffered = '';
+  let finalMessage = null;
+
+  const handleLine = (line) => {
+    if (!line.trim()) return;
+    let message;
+    try {
+      message = JSON.parse(line);
+    } catch {
+      throw new Error(`Invalid stream message: ${line.substring(0, 100)}`);
+    }
+    if (message.event === 'result' || message.event === 'error') {
+      finalMessage = message;
+    } else {
+      onEvent(message);
+    }
+  };
+
+  while (true) {
+    const { value, done } = await reader.read();
+    if (done) break;
+    buffered += decoder.decode(value, { stream: true });
+
+    let newlineIndex = buffered.indexOf('\n');
+    while (newlineIndex >= 0) {
+      handleLine(buffered.slice(0, newlineIndex));
+      buffered = buffered.slice(newlineIndex + 1);
+      newlineIndex = buffered.indexOf('\n');
+    }
+  }
+  handleLine(buffered + decoder.decode());
+
+  if (!finalMessage) {
+    throw new Error('Stream ended before the route was ready');
+  }
+
+  if (finalMessage.event === 'error') {
+    throw new Error(finalMessage.data?.body?.error || 'Failed to process audio');
+  }
+
+  return finalMessage.data.body;
+}
+
+async function readErrorMessage(response, fallback) {
+  const text = await response.text();
+  try {
+    return JSON.parse(text).error || fallback;
+  } catch {
+    return text ? text.substring(0, 100) : fallback;
+  }
+}
+
+/**
+ * Upload a voice recording to /process-voice/stream and dispatch stage events as they arrive.
+ *
+ * @param {FormData} formData - Multipart body with the audio and optional context fields
+ * @param {Function} onEvent - Called with ({ event, data }) for each intermediate stage
+ * @returns {Promise<Object>} - Final response body
+ */
+export async function processVoiceStream(formData, onEvent = () => {}) {
+  const response = await fetch(`${API_BASE_URL}/process-voice/stream`, {
+    method: 'POST',
+    credentials: 'include',
+    body: formData
+  });
+
+  return readVoiceStream(response, onEvent);
+}
+
+/**
+ * Open a voice session so the recording can be uploaded while the user is still speaking.
+ *
+ * @param {Object} context - { mimeType, currentRoute, userLocation }
+ * @returns {Promise<string>} - Session id
+ */
+export async function createVoiceSession(context) {
+  const response = await fetch(`${API_BASE_URL}/voice-sessions`, {
+    method: 'POST',
+    credentials: 'include',
+    headers: { 'Content-Type': 'application/json' },
+    body: JSON.stringify(context)
+  });
+
+  if (!response.ok) {
+    throw new Error(await readErrorMessage(response, 'Failed to start voice session'));
+  }
+
+  const { sessionId } = await response.json();
+  return sessionId;
+}
+
+/**
+ * Append one MediaRecorder chunk. Chunks must be uploaded one at a time, in order.
+ */
+export async function uploadVoiceChunk(sessionId, seq, chunk) {
+  const response = await fetch(`${API_BASE_URL}/voice-sessions/${sessionId}/chunks?seq=${seq}`, {
+    method: 'POST',
+    credentials: 'include',
+    headers: { 'Content-Type': 'application/octet-stream' },
+    body: chunk
+  });
+
+  if (!response.ok) {
+    throw new Error(await readErrorMessage(response, 'Failed to upload audio chunk'));
+  }
+}
+
+/**
+ * Close the recording and stream the pipeline stages, like processVoiceStream.
+ */
+export async function finishVoiceSessionStream(sessionId, onEvent = () => {}) {
+  const response = await fetch(`${API_BASE_URL}/voice-sessions/${sessionId}/finish`, {
+    method: 'POST',
+    credentials: 'include'
+  });
+
+  return readVoiceStream(response, onEvent);
+}
+
+/**
+ * Abandon a voice session (e.g. after falling back to a single upload).
+ */
+export function cancelVoiceSession(sessionId) {
+  return fetch(`${API_BASE_URL}/voice-sessions/${sessionId}`, {
+    method: 'DELETE',
+    credentials: 'include'
+  }).catch(() => {});
+}
@@ -0,0 +1,106 @@
+import {
+  calculateDistance,
+  distancesFrom,
+  equirectangularDistance,
+  haversineDistance,
+  isWithinDistance
+} from './src/utils/geo.js';
+
+// Micro-benchmarks for utils/geo.js: per-call cost of haversine vs. the equirectangular
+// fast path, the one-to-many batch API, and the approximation error against haversine.
+// Usage: node bench-geo.js [pairs]
+
+const PAIRS = Number(process.argv[2] || 200000);
+const ROUNDS = 5;
+
+// Deterministic PRNG so runs are comparable
+let seed = 7;
+function random() {
+  seed = (seed * 1664525 + 1013904223) % 4294967296;
+  return seed / 4294967296;
+}
+
+function makePairs(count, spanDegrees) {
+  const lat1 = new Float64Array(count);
+  const lng1 = new Float64Array(count);
+  const lat2 = new Float64Array(count);
+  const lng2 = new Float64Array(count);
+  for (let i = 0; i < count; i++) {
+    lat1[i] = -60 + random() * 120;
+    lng1[i] = -180 + random() * 360;
+    lat2[i] = Math.max(-89, Math.min(89, lat1[i] + (random() - 0.5) * 2 * spanDegrees));
+    lng2[i] = lng1[i] + (random() - 0.5) * 2 * spanDegrees;
+  }
+  return { lat1, lng1, lat2, lng2 };
+}
+
+let sink = 0;
+
+function bench(label, count, fn) {
+  fn(); // warm up
+  let best = Infinity;
+  for (let round = 0; round < ROUNDS; round++) {
+    const started = performance.now();
+    sink += fn();
+    best = Math.min(best, performance.now() - started);
+  }
+  console.log(`  ${label.padEnd(34)} ${((best * 1e6) / count).toFixed(1).padStart(7)} ns/op`);
+}
+
+function pairwise(distanceFn, { lat1, lng1, lat2, lng2 }) {
+  return () => {
+    let total = 0;
+    for (let i = 0; i < lat1.length; i++) {
+      total += distanceFn(lat1[i], lng1[i], lat2[i], lng2[i]);
+    }
+    return total;
+  };
+}
+
+function maxRelativeError(distanceFn, { lat1, lng1, lat2, lng2 }) {
+  let worst = 0;
+  for (let i = 0; i < lat1.length; i++) {
+    const exact = haversineDistance(lat1[i], lng1[i], lat2[i], lng2[i]);
+    if (exact < 1) continue;
+    worst = Math.max(worst, Math.abs(distanceFn(lat1[i], lng1[i], lat2[i], lng2[i]) - exact) / exact);
+  }
+  return worst;
+}
+
+const cases = [
+  ['short (< 5km: proximity checks, polyline legs)', makePairs(PAIRS, 0.03)],
+  ['medium (< 50km: search radius, scoring)', makePairs(PAIRS, 0.3)],
+  ['long (> 50km: falls back to haversine)', makePairs(PAIRS, 10)]
+];
+
+for (const [label, pairs] of cases) {
+  console.log(`${label}, ${PAIRS} pairs`);
+  bench('haversineDistance', PAIRS, pairwise(haversineDistance, pairs));
+  bench('equirectangularDistance', PAIRS, pairwise(equirectangularDistance, pairs));
+  bench('calculateDistance', PAIRS, pairwise(calculateDistance, pairs));
+  bench('isWithinDistance(1km)', PAIRS, pairwise((a, b, c, d) => (isWithinDistance(a, b, c, d, 1000) ? 1 : 0), pairs));
+  console.log(`  calculateDistance max error vs haversine: ${(maxRelativeError(calculateDistance, pairs) * 100).toFixed(5)}%`);
+  console.log('');
+}
+
+// One origin to many targets (e.g. scoring every candidate shop against the user)
+const origin = { lat: 36.17, lng: -115.14 };
+const { lat2: targetLats, lng2: targetLngs } = makePairs(PAIRS, 0.3);
+for (let i = 0; i < PAIRS; i++) {
+  targetLats[i] = origin.lat + (targetLats[i] % 0.3);
+  targetLngs[i] = origin.lng + (targetLngs[i] % 0.3);
+}
+const out = new Float64Array(PAIRS);
+
+console.log(`one-to-many, ${PAIRS} targets within ~30km`);
+bench('haversine loop', PAIRS, () => {
+  let total = 0;
+  for (let i = 0; i < PAIRS; i++) total += haversineDistance(origin.lat, origin.lng, targetLats[i], targetLngs[i]);
+  return total;
+});
+bench('distancesFrom (typed arrays)', PAIRS, () => {
+  distancesFrom(origin.lat, origin.lng, targetLats, targetLngs, out);
+  return out[PAIRS - 1];
+});
+
+if (Number.isNaN(sink)) console.log('unreachable');
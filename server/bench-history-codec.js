@@ -0,0 +1,56 @@
+import fs from 'fs';
+import { getDatabase } from './src/db/database.js';
+import { decodeRoutePayload, encodeRoutePayload } from './src/utils/routePayloadCodec.js';
+
+// Size/latency report for history route payloads: stored size vs. plain JSON,
+// and per-row encode/decode time for the current codec settings.
+
+const db = getDatabase();
+
+const rows = db.prepare(`
+  SELECT id, route_data_json
+  FROM history
+  ORDER BY id
+`).all();
+
+if (rows.length === 0) {
+  console.log('No history entries found. Create a route first!');
+  process.exit(0);
+}
+
+const encodeTimes = [];
+const decodeTimes = [];
+let jsonBytes = 0;
+let storedBytes = 0;
+
+for (const row of rows) {
+  let started = performance.now();
+  const route = decodeRoutePayload(row.route_data_json);
+  decodeTimes.push(performance.now() - started);
+
+  const json = JSON.stringify(route);
+  jsonBytes += Buffer.byteLength(json);
+
+  started = performance.now();
+  const encoded = encodeRoutePayload(route);
+  encodeTimes.push(performance.now() - started);
+  storedBytes += encoded.length;
+}
+
+function percentile(values, p) {
+  const sorted = [...values].sort((a, b) => a - b);
+  return sorted[Math.min(sorted.length - 1, Math.floor((p / 100) * sorted.length))];
+}
+
+function fileSizeKb(filePath) {
+  return fs.existsSync(filePath) ? (fs.statSync(filePath).size / 1024).toFixed(0) : '0';
+}
+
+console.log('=== History route payloads ===\n');
+console.log(`Rows:            ${rows.length}`);
+console.log(`Plain JSON:      ${(jsonBytes / 1024).toFixed(1)} KB`);
+console.log(`Compressed:      ${(storedBytes / 1024).toFixed(1)} KB (${(jsonBytes / storedBytes).toFixed(1)}x)`);
+console.log(`Encode p50/p95:  ${percentile(encodeTimes, 50).toFixed(3)} / ${percentile(encodeTimes, 95).toFixed(3)} ms`);
+console.log(`Decode p50/p95:  ${percentile(decodeTimes, 50).toFixed(3)} / ${percentile(decodeTimes, 95).toFixed(3)} ms`);
+console.log(`voice-nav.db:    ${fileSizeKb('./voice-nav.db')} KB`);
+console.log(`voice-nav.db-wal: ${fileSizeKb('./voice-nav.db-wal')} KB`);
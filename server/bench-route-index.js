@@ -0,0 +1,145 @@
+import { distanceToRoute } from './src/utils/routeUtils.js';
+import { buildRouteGeometry, nearestPointOnRoute } from './src/utils/routeGeometry.js';
+import { RouteSegmentIndex } from './src/utils/routeSegmentIndex.js';
+
+// Nearest-segment benchmark on a Las Vegas → Zion-length route (~260km):
+// the per-segment loop (distanceToRoute), a linear scan over the decoded geometry,
+// and the RouteSegmentIndex grid. Usage: node bench-route-index.js [vertexSpacingMeters] [candidates]
+
+const VERTEX_SPACING_M = Number(process.argv[2] || 40);
+const CANDIDATES = Number(process.argv[3] || 500);
+
+// Rough I-15 corridor; the densified path wiggles around it like a real road
+const CORRIDOR = [
+  { lat: 36.1699, lng: -115.1398, name: 'Las Vegas' },
+  { lat: 36.6413, lng: -114.4883, name: 'Moapa' },
+  { lat: 36.8055, lng: -114.0672, name: 'Mesquite' },
+  { lat: 37.0965, lng: -113.5684, name: 'St. George' },
+  { lat: 37.1750, lng: -113.2899, name: 'Hurricane' },
+  { lat: 37.2982, lng: -113.0263, name: 'Zion' }
+];
+
+// Deterministic PRNG so runs are comparable
+let seed = 42;
+function random() {
+  seed = (seed * 1664525 + 1013904223) % 4294967296;
+  return seed / 4294967296;
+}
+
+function encodeSigned(value) {
+  let v = value < 0 ? ~(value << 1) : value << 1;
+  let out = '';
+  while (v >= 0x20) {
+    out += String.fromCharCode((0x20 | (v & 0x1f)) + 63);
+    v >>= 5;
+  }
+  return out + String.fromCharCode(v + 63);
+}
+
+function encodePolyline(points) {
+  let lastLat = 0;
+  let lastLng = 0;
+  let out = '';
+  for (const { lat, lng } of points) {
+    const eLat = Math.round(lat * 1e5);
+    const eLng = Math.round(lng * 1e5);
+    out += encodeSigned(eLat - lastLat) + encodeSigned(eLng - lastLng);
+    lastLat = eLat;
+    lastLng = eLng;
+  }
+  return out;
+}
+
+function densify(corridor, spacingMeters) {
+  const points = [];
+  for (let i = 0; i < corridor.length - 1; i++) {
+    const a = corridor[i];
+    const b = corridor[i + 1];
+    const meters = Math.hypot((b.lat - a.lat) * 111320, (b.lng - a.lng) * 111320 * Math.cos((a.lat * Math.PI) / 180));
+    const steps = Math.ceil(meters / spacingMeters);
+    for (let s = 0; s < steps; s++) {
+      const t = s / steps;
+      const wiggle = Math.sin(t * Math.PI * 14) * 0.01 + Math.sin(t * Math.PI * 60) * 0.002;
+      points.push({
+        lat: a.lat + (b.lat - a.lat) * t + wiggle,
+        lng: a.lng + (b.lng - a.lng) * t - wiggle
+      });
+    }
+  }
+  points.push(corridor[corridor.length - 1]);
+  return points;
+}
+
+function percentile(values, p) {
+  const sorted = [...values].sort((a, b) => a - b);
+  return sorted[Math.min(sorted.length - 1, Math.floor((p / 100) * sorted.length))];
+}
+
+function time(label, fn, points) {
+  const times = [];
+  const results = [];
+  for (const point of points) {
+    const started = performance.now();
+    results.push(fn(point));
+    times.push(performance.now() - started);
+  }
+  const total = times.reduce((sum, t) => sum + t, 0);
+  console.log(
+    `${label.padEnd(24)} total ${total.toFixed(1).padStart(8)}ms  ` +
+    `avg ${(total / points.length).toFixed(4)}ms  p95 ${percentile(times, 95).toFixed(4)}ms`
+  );
+  return results;
+}
+
+const vertices = densify(CORRIDOR, VERTEX_SPACING_M);
+const route = {
+  overview_polyline: encodePolyline(vertices),
+  stops: [CORRIDOR[0], CORRIDOR[CORRIDOR.length - 1]]
+};
+
+let started = performance.now();
+const geometry = buildRouteGeometry(route);
+const decodeMs = performance.now() - started;
+
+started = performance.now();
+const index = new RouteSegmentIndex(geometry);
+const buildMs = performance.now() - started;
+
+// Candidate shops: most within a few km of the road, some well off it
+const candidates = [];
+for (let i = 0; i < CANDIDATES; i++) {
+  const onRoute = vertices[Math.floor(random() * vertices.length)];
+  const spread = i % 10 === 0 ? 0.5 : 0.05;
+  candidates.push({
+    lat: onRoute.lat + (random() - 0.5) * spread,
+    lng: onRoute.lng + (random() - 0.5) * spread
+  });
+}
+
+// The loop as it ran before: distanceToLineSegment per vertex pair
+const legacyRoute = {
+  origin: vertices[0],
+  waypoints: vertices.slice(1, -1),
+  destination: vertices[vertices.length - 1]
+};
+
+console.log(`Route: ${(geometry.length / 1000).toFixed(1)}km, ${geometry.pointCount} vertices, ${CANDIDATES} candidates`);
+console.log(`Decode + cumulative distances: ${decodeMs.toFixed(2)}ms, index build: ${buildMs.toFixed(2)}ms`);
+console.log('');
+
+const legacy = time('distanceToRoute loop', (point) => distanceToRoute(point, legacyRoute), candidates);
+const linear = time('geometry linear scan', (point) => nearestPointOnRoute(geometry, point), candidates);
+const indexed = time('segment grid index', (point) => index.nearest(point), candidates);
+
+let maxDiff = 0;
+let segmentMismatches = 0;
+for (let i = 0; i < candidates.length; i++) {
+  maxDiff = Math.max(maxDiff, Math.abs(indexed[i].distance - linear[i].distance));
+  if (indexed[i].segmentIndex !== linear[i].segmentIndex) segmentMismatches += 1;
+}
+const legacyDiff = Math.max(...legacy.map((d, i) => Math.abs(d - linear[i].distance)));
+
+console.log('');
+console.log(`Index vs linear scan: max distance diff ${maxDiff.toFixed(3)}m, segment mismatches ${segmentMismatches}`);
+console.log(`Loop vs linear scan: max distance diff ${legacyDiff.toFixed(1)}m (planar lat/lng projection)`);
+console.log('Index stats:', index.getStats());
@@ -1,11 +1,17 @@
 import Database from 'better-sqlite3';
 import path from 'path';
 import { fileURLToPath } from 'url';
+import { decodeRoutePayload, encodeRoutePayload } from '../utils/routePayloadCodec.js';
+import { prepareStatements } from './statements.js';
 
 const __dirname = path.dirname(fileURLToPath(import.meta.url));
 const DB_PATH = path.resolve(__dirname, '../../voice-nav.db');
 
+// PRAGMA user_version once history.route_data_json rows were converted to compressed BLOBs
+const COMPRESSED_ROUTE_PAYLOAD_VERSION = 1;
+
 let db = null;
+let statements = null;
 
 export function initDatabase() {
   if (db) {
@@ -72,10 +78,59 @@ export function initDatabase() {
     CREATE INDEX IF NOT EXISTS idx_history_created_at ON history(created_at DESC);
   `);
 
+  // Lightweight migration: route summary columns so the history list never reads route_data_json.
+  const historyColumns = db.prepare(`PRAGMA table_info(history);`).all();
+  const hasSummaryColumns = historyColumns.some((col) => col.name === 'total_distance_m');
+  if (!hasSummaryColumns) {
+    db.exec(`
+      ALTER TABLE history ADD COLUMN total_distance_m INTEGER;
+      ALTER TABLE history ADD COLUMN total_duration_s INTEGER;
+      ALTER TABLE history ADD COLUMN polyline_length INTEGER;
+    `);
+    backfillHistorySummaries(db);
+  }
+
+  // Keyset pagination index: seeks (user_id, created_at, id) and covers the fixed-size
+  // summary columns. The unbounded transcript stays out of it; a page reads it from the
+  // table rows it returns. Replaces idx_history_user_created and idx_history_user_created_id
+  // (which also covered transcript).
+  db.exec(`
+    CREATE INDEX IF NOT EXISTS idx_history_user_page ON history(
+      user_id, created_at DESC, id DESC,
+      action_type, total_distance_m, total_duration_s, polyline_length
+    );
+  `);
+
   db.exec(`
-    CREATE INDEX IF NOT EXISTS idx_history_user_created ON history(user_id, created_at DESC);
+    DROP INDEX IF EXISTS idx_history_user_created;
+    DROP INDEX IF EXISTS idx_history_user_created_id;
   `);
 
+  // One row per geocoded stop of a history entry, so recent destinations don't need
+  // to parse route_data_json. Rows are looked up through the (history_id, ordinal) key.
+  const hasHistoryStops = db.prepare(`
+    SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'history_stops'
+  `).get();
+
+  db.exec(`
+    CREATE TABLE IF NOT EXISTS history_stops (
+      history_id INTEGER NOT NULL,
+      ordinal INTEGER NOT NULL,
+      lat REAL NOT NULL,
+      lng REAL NOT NULL,
+      place_id TEXT,
+      name TEXT,
+      type TEXT,
+      formatted_address TEXT,
+      PRIMARY KEY (history_id, ordinal),
+      FOREIGN KEY (history_id) REFERENCES history(id) ON DELETE CASCADE
+    ) WITHOUT ROWID;
+  `);
+
+  if (!hasHistoryStops) {
+    backfillHistoryStops(db);
+  }
+
   // Create saved routes table
   db.exec(`
     CREATE TABLE IF NOT EXISTS saved_routes (
@@ -97,11 +152,198 @@ export function initDatabase() {
     CREATE INDEX IF NOT EXISTS idx_saved_routes_last_used ON saved_routes(last_used DESC);
   `);
 
+  // Create geocode cache table (expires_at is epoch milliseconds)
+  db.exec(`
+    CREATE TABLE IF NOT EXISTS geocode_cache (
+      cache_key TEXT PRIMARY KEY,
+      result_json TEXT NOT NULL,
+      is_negative INTEGER NOT NULL DEFAULT 0,
+      expires_at INTEGER NOT NULL,
+      created_at TEXT NOT NULL DEFAULT (datetime('now'))
+    );
+  `);
+
+  db.exec(`
+    CREATE INDEX IF NOT EXISTS idx_geocode_cache_expires_at ON geocode_cache(expires_at);
+  `);
+
+  // Last generated route per signed-in user (only written when LAST_ROUTE_PERSIST=true)
+  db.exec(`
+    CREATE TABLE IF NOT EXISTS last_routes (
+      owner_key TEXT PRIMARY KEY,
+      payload_json TEXT NOT NULL,
+      updated_at TEXT NOT NULL
+    );
+  `);
+
+  if (db.pragma('user_version', { simple: true }) < COMPRESSED_ROUTE_PAYLOAD_VERSION) {
+    compressHistoryPayloads(db);
+    db.pragma(`user_version = ${COMPRESSED_ROUTE_PAYLOAD_VERSION}`);
+  }
+
+  const purgedGeocodes = db.prepare(`DELETE FROM geocode_cache WHERE expires_at <= ?`).run(Date.now());
+  if (purgedGeocodes.changes > 0) {
+    console.log(`Purged ${purgedGeocodes.changes} expired geocode cache entries`);
+  }
+
+  // Prepared once, after all migrations, for the lifetime of the connection
+  statements = prepareStatements(db);
+
   console.log('Database initialized successfully');
 
   return db;
 }
 
+/**
+ * Insert the geocoded stops of a saved route into history_stops.
+ * @param {Object} insertStatement - Prepared history_stops INSERT (callers run this inside their transaction)
+ * @param {number} historyId - history.id the stops belong to
+ * @param {Object} routeData - Route with a stops array (lat, lng, placeId, name, type, ...)
+ */
+export function insertHistoryStops(insertStatement, historyId, routeData) {
+  (routeData?.stops || []).forEach((stop, ordinal) => {
+    const lat = Number(stop?.lat);
+    const lng = Number(stop?.lng);
+    if (!Number.isFinite(lat) || !Number.isFinite(lng)) return;
+
+    insertStatement.run(
+      historyId,
+      ordinal,
+      lat,
+      lng,
+      stop.placeId || null,
+      stop.name || stop.original || stop.searchQuery || null,
+      stop.type || null,
+      stop.formattedAddress || null
+    );
+  });
+}
+
+/**
+ * Summary values stored next to route_data_json for the history list.
+ * @param {Object} routeData - Normalized route (totals, overview_polyline)
+ * @returns {{totalDistanceMeters: number|null, totalDurationSeconds: number|null, polylineLength: number}}
+ */
+export function summarizeRoute(routeData) {
+  const distance = Number(routeData?.totals?.distance?.value);
+  const duration = Number(routeData?.totals?.duration?.value);
+  return {
+    totalDistanceMeters: Number.isFinite(distance) ? Math.round(distance) : null,
+    totalDurationSeconds: Number.isFinite(duration) ? Math.round(duration) : null,
+    polylineLength: typeof routeData?.overview_polyline === 'string' ? routeData.overview_polyline.length : 0
+  };
+}
+
+function backfillHistorySummaries(database) {
+  const selectPage = database.prepare(`
+    SELECT id, route_data_json FROM history WHERE id > ? ORDER BY id LIMIT 500
+  `);
+  const update = database.prepare(`
+    UPDATE history SET total_distance_m = ?, total_duration_s = ?, polyline_length = ? WHERE id = ?
+  `);
+  let lastId = 0;
+
+  const backfill = database.transaction(() => {
+    let rows = selectPage.all(lastId);
+    while (rows.length > 0) {
+      for (const row of rows) {
+        try {
+          const summary = summarizeRoute(decodeRoutePayload(row.route_data_json));
+          update.run(summary.totalDistanceMeters, summary.totalDurationSeconds, summary.polylineLength, row.id);
+        } catch (error) {
+          console.error(`Skipping summary backfill for history ${row.id}:`, error.message);
+        }
+      }
+      lastId = rows[rows.length - 1].id;
+      rows = selectPage.all(lastId);
+    }
+  });
+  backfill();
+}
+
+/**
+ * One-time migration: re-encode plain JSON route payloads with the storage codec,
+ * then reclaim the freed pages so the database file and WAL actually shrink.
+ */
+function compressHistoryPayloads(database) {
+  const selectPage = database.prepare(`
+    SELECT id, route_data_json FROM history
+    WHERE id > ? AND typeof(route_data_json) = 'text'
+    ORDER BY id LIMIT 500
+  `);
+  const update = database.prepare(`UPDATE history SET route_data_json = ? WHERE id = ?`);
+  const started = Date.now();
+  let lastId = 0;
+  let converted = 0;
+  let bytesBefore = 0;
+  let bytesAfter = 0;
+
+  const compressPage = database.transaction((rows) => {
+    for (const row of rows) {
+      try {
+        const encoded = encodeRoutePayload(JSON.parse(row.route_data_json));
+        update.run(encoded, row.id);
+        converted += 1;
+        bytesBefore += Buffer.byteLength(row.route_data_json);
+        bytesAfter += encoded.length;
+      } catch (error) {
+        console.error(`Skipping route payload compression for history ${row.id}:`, error.message);
+      }
+    }
+  });
+
+  let rows = selectPage.all(lastId);
+  while (rows.length > 0) {
+    compressPage(rows);
+    lastId = rows[rows.length - 1].id;
+    rows = selectPage.all(lastId);
+  }
+
+  if (converted === 0) return;
+
+  database.exec('VACUUM');
+  database.pragma('wal_checkpoint(TRUNCATE)');
+  const ratio = bytesAfter > 0 ? (bytesBefore / bytesAfter).toFixed(1) : '0';
+  console.log(
+    `🗜️  Compressed ${converted} history route payloads: ${(bytesBefore / 1024).toFixed(0)}KB → ` +
+    `${(bytesAfter / 1024).toFixed(0)}KB (${ratio}x) in ${Date.now() - started}ms`
+  );
+}
+
+function backfillHistoryStops(database) {
+  // Page through by id so large histories are never held in memory at once
+  const selectPage = database.prepare(`
+    SELECT id, route_data_json FROM history WHERE id > ? ORDER BY id LIMIT 500
+  `);
+  const insertStop = database.prepare(`
+    INSERT INTO history_stops (history_id, ordinal, lat, lng, place_id, name, type, formatted_address)
+    VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+  `);
+  let lastId = 0;
+  let backfilled = 0;
+
+  const backfill = database.transaction(() => {
+    let rows = selectPage.all(lastId);
+    while (rows.length > 0) {
+      for (const row of rows) {
+        try {
+          insertHistoryStops(insertStop, row.id, decodeRoutePayload(row.route_data_json));
+          backfilled += 1;
+        } catch (error) {
+          console.error(`Skipping history_stops backfill for history ${row.id}:`, error.message);
+        }
+      }
+      lastId = rows[rows.length - 1].id;
+      rows = selectPage.all(lastId);
+    }
+  });
+  backfill();
+
+  if (backfilled > 0) {
+    console.log(`Backfilled history_stops for ${backfilled} history entries`);
+  }
+}
+
 export function getDatabase() {
   if (!db) {
     return initDatabase();
@@ -109,4 +351,15 @@ export function getDatabase() {
   return db;
 }
 
+/**
+ * Prepared statements for the data access layer, grouped by table.
+ * @returns {import('./statements.js').StatementRegistry}
+ */
+export function getStatements() {
+  if (!statements) {
+    initDatabase();
+  }
+  return statements;
+}
+
 export { db };
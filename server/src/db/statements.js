@@ -0,0 +1,241 @@
+/**
+ * Prepared statement registry for the data access layer.
+ * Every query is prepared once when the database opens instead of on each call, and
+ * wrapped so per-statement latency and row counts show up in /metrics.
+ */
+
+const SLOW_QUERY_MS = Number(process.env.DB_SLOW_QUERY_MS || 50);
+
+const STATEMENT_SQL = {
+  users: {
+    findById: 'SELECT * FROM users WHERE id = ?',
+    findByEmail: 'SELECT * FROM users WHERE email = ? COLLATE NOCASE',
+    findByUsername: 'SELECT * FROM users WHERE username = ? COLLATE NOCASE',
+    insert: 'INSERT INTO users (username, email) VALUES (?, ?)',
+    recordLogin: "UPDATE users SET last_login = datetime('now'), email = ? WHERE id = ?",
+    listAll: 'SELECT id, username, created_at, last_login FROM users ORDER BY last_login DESC'
+  },
+  history: {
+    insert: `
+      INSERT INTO history (
+        user_id, action_type, transcript, stops_json, route_data_json,
+        total_distance_m, total_duration_s, polyline_length
+      )
+      VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+    `,
+    firstPage: `
+      SELECT id, action_type, transcript, total_distance_m, total_duration_s, polyline_length, created_at
+      FROM history
+      WHERE user_id = ?
+      ORDER BY created_at DESC, id DESC
+      LIMIT ?
+    `,
+    pageAfter: `
+      SELECT id, action_type, transcript, total_distance_m, total_duration_s, polyline_length, created_at
+      FROM history
+      WHERE user_id = ? AND (created_at, id) < (?, ?)
+      ORDER BY created_at DESC, id DESC
+      LIMIT ?
+    `,
+    findById: `
+      SELECT id, action_type, transcript, stops_json, route_data_json, created_at
+      FROM history
+      WHERE id = ? AND user_id = ?
+    `,
+    version: `
+      SELECT COUNT(*) AS count, MAX(id) AS maxId
+      FROM history
+      WHERE user_id = ?
+    `,
+    delete: `
+      DELETE FROM history
+      WHERE id = ? AND user_id = ?
+    `
+  },
+  historyStops: {
+    insert: `
+      INSERT INTO history_stops (history_id, ordinal, lat, lng, place_id, name, type, formatted_address)
+      VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+    `,
+    namesForHistory: `
+      SELECT history_id, name
+      FROM history_stops
+      WHERE history_id IN (SELECT value FROM json_each(?))
+      ORDER BY history_id, ordinal
+    `,
+    recentForUser: `
+      SELECT s.lat, s.lng, s.place_id, s.name, s.type, s.formatted_address, h.created_at
+      FROM history h
+      JOIN history_stops s ON s.history_id = h.id
+      WHERE h.user_id = ?
+      ORDER BY h.created_at DESC, h.id DESC, s.ordinal ASC
+    `,
+    deleteForHistory: 'DELETE FROM history_stops WHERE history_id = ?'
+  },
+  savedRoutes: {
+    insert: `
+      INSERT INTO saved_routes (user_id, route_name, stops_json)
+      VALUES (?, ?, ?)
+    `,
+    listForUser: `
+      SELECT id, route_name, stops_json, created_at, last_used
+      FROM saved_routes
+      WHERE user_id = ?
+      ORDER BY last_used DESC, created_at DESC
+    `,
+    findById: `
+      SELECT id, route_name, stops_json, created_at, last_used
+      FROM saved_routes
+      WHERE id = ? AND user_id = ?
+    `,
+    update: `
+      UPDATE saved_routes
+      SET route_name = ?, stops_json = ?, last_used = datetime('now')
+      WHERE id = ? AND user_id = ?
+    `,
+    touch: `
+      UPDATE saved_routes
+      SET last_used = datetime('now')
+      WHERE id = ? AND user_id = ?
+    `,
+    delete: `
+      DELETE FROM saved_routes
+      WHERE id = ? AND user_id = ?
+    `
+  },
+  geocodeCache: {
+    get: `
+      SELECT result_json, is_negative, expires_at
+      FROM geocode_cache
+      WHERE cache_key = ?
+    `,
+    upsert: `
+      INSERT INTO geocode_cache (cache_key, result_json, is_negative, expires_at)
+      VALUES (?, ?, ?, ?)
+      ON CONFLICT(cache_key) DO UPDATE SET
+        result_json = excluded.result_json,
+        is_negative = excluded.is_negative,
+        expires_at = excluded.expires_at,
+        created_at = datetime('now')
+    `
+  },
+  lastRoutes: {
+    get: 'SELECT payload_json FROM last_routes WHERE owner_key = ?',
+    upsert: `
+      INSERT INTO last_routes (owner_key, payload_json, updated_at)
+      VALUES (?, ?, ?)
+      ON CONFLICT(owner_key) DO UPDATE SET
+        payload_json = excluded.payload_json,
+        updated_at = excluded.updated_at
+    `
+  }
+};
+
+/**
+ * @typedef {Object} InstrumentedStatement
+ * @property {(...params: any[]) => import('better-sqlite3').RunResult} run
+ * @property {(...params: any[]) => Object|undefined} get
+ * @property {(...params: any[]) => Array<Object>} all
+ * @property {(...params: any[]) => IterableIterator<Object>} iterate
+ */
+
+/**
+ * @typedef {{ [group in keyof typeof STATEMENT_SQL]: { [name in keyof typeof STATEMENT_SQL[group]]: InstrumentedStatement } }} StatementRegistry
+ */
+
+const statementStats = new Map(); // "group.name" -> { calls, rows, totalMs, maxMs, slowCalls }
+
+function record(stats, elapsedMs, rows) {
+  stats.calls += 1;
+  stats.rows += rows;
+  stats.totalMs += elapsedMs;
+  stats.maxMs = Math.max(stats.maxMs, elapsedMs);
+  if (elapsedMs >= SLOW_QUERY_MS) stats.slowCalls += 1;
+}
+
+function instrument(statement, stats) {
+  const timed = (method, countRows) => (...params) => {
+    const started = performance.now();
+    const result = statement[method](...params);
+    record(stats, performance.now() - started, countRows(result));
+    return result;
+  };
+
+  return {
+    run: timed('run', (result) => result.changes),
+    get: timed('get', (row) => (row === undefined ? 0 : 1)),
+    all: timed('all', (rows) => rows.length),
+
+    // Times only the steps SQLite takes, not the caller's work between rows
+    iterate(...params) {
+      const iterator = statement.iterate(...params);
+      let elapsedMs = 0;
+      let rows = 0;
+      let recorded = false;
+      const finish = () => {
+        if (recorded) return;
+        recorded = true;
+        record(stats, elapsedMs, rows);
+      };
+
+      return {
+        [Symbol.iterator]() {
+          return this;
+        },
+        next() {
+          const started = performance.now();
+          const step = iterator.next();
+          elapsedMs += performance.now() - started;
+          if (step.done) {
+            finish();
+          } else {
+            rows += 1;
+          }
+          return step;
+        },
+        return(value) {
+          iterator.return?.();
+          finish();
+          return { done: true, value };
+        }
+      };
+    }
+  };
+}
+
+/**
+ * Prepare every registered statement against an open database.
+ * @param {import('better-sqlite3').Database} db
+ * @returns {StatementRegistry}
+ */
+export function prepareStatements(db) {
+  return Object.fromEntries(
+    Object.entries(STATEMENT_SQL).map(([group, queries]) => [
+      group,
+      Object.fromEntries(
+        Object.entries(queries).map(([name, sql]) => {
+          const key = `${group}.${name}`;
+          if (!statementStats.has(key)) {
+            statementStats.set(key, { calls: 0, rows: 0, totalMs: 0, maxMs: 0, slowCalls: 0 });
+          }
+          return [name, instrument(db.prepare(sql), statementStats.get(key))];
+        })
+      )
+    ])
+  );
+}
+
+/**
+ * Per-statement latency and row counts, slowest total time first.
+ */
+export function getStatementStats() {
+  return {
+    slowQueryMs: SLOW_QUERY_MS,
+    statements: Object.fromEntries(
+      Array.from(statementStats.entries())
+        .filter(([, stats]) => stats.calls > 0)
+        .sort(([, a], [, b]) => b.totalMs - a.totalMs)
+        .map(([key, stats]) => [key, { ...stats, avgMs: stats.totalMs / stats.calls }])
+    )
+  };
+}
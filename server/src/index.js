@@ -1,23 +1,28 @@
+// Load .env before any other module reads process.env at import time
+import 'dotenv/config';
 import express from 'express';
 import cors from 'cors';
-import dotenv from 'dotenv';
-import fs from 'fs';
-import path from 'path';
-import { fileURLToPath } from 'url';
 import session from 'express-session';
 import { initDatabase } from './db/database.js';
 import navigationRoutes from './routes/navigation.js';
 import usersRoutes from './routes/users.js';
 import historyRoutes from './routes/history.js';
 import savedRoutesRoutes from './routes/savedRoutes.js';
-
-dotenv.config();
+import { getGeocodeCacheStats } from './services/geocodeCache.js';
+import { getExtractionCacheStats } from './services/extractionCache.js';
+import { getMapsSingleFlightStats } from './services/maps.js';
+import { getPlaceDetailsStats } from './services/placeService.js';
+import { getPlaceIndexStats } from './services/placeIndex.js';
+import { getRouteCacheStats } from './services/routeCache.js';
+import { getLastRouteStoreStats } from './services/lastRouteStore.js';
+import { getOutboundSchedulerStats } from './services/outboundScheduler.js';
+import { getVoiceSessionStats } from './services/voiceSessionStore.js';
+import { getRoutePayloadCodecStats } from './utils/routePayloadCodec.js';
+import { flushHistoryQueue, getHistoryWriteQueueStats } from './services/historyService.js';
+import { getStatementStats } from './db/statements.js';
 
 const app = express();
 const PORT = process.env.PORT || 3001;
-const __filename = fileURLToPath(import.meta.url);
-const __dirname = path.dirname(__filename);
-const ROUTE_CACHE_PATH = path.resolve(__dirname, '../route_cache.json');
 
 const maskSecret = (value) => {
   if (!value) return 'missing';
@@ -43,7 +48,8 @@ app.use(cors({
   },
   credentials: true
 }));
-app.use(express.json());
+// Route context (currentRoute) travels in JSON bodies for text commands and voice sessions
+app.use(express.json({ limit: '2mb' }));
 
 // Trust proxy in production (HTTPS behind load balancer)
 if (isProduction) {
@@ -77,14 +83,23 @@ app.get('/health', (req, res) => {
   res.json({ status: 'ok' });
 });
 
-const clearRouteCache = (reason) => {
-  try {
-    fs.rmSync(ROUTE_CACHE_PATH, { force: true });
-    console.log(`Cleared route cache (${reason})`);
-  } catch (error) {
-    console.error(`Failed to clear route cache (${reason}):`, error);
-  }
-};
+// Cache and upstream call metrics
+app.get('/metrics', (req, res) => {
+  res.json({
+    geocodeCache: getGeocodeCacheStats(),
+    geminiCache: getExtractionCacheStats(),
+    mapsSingleFlight: getMapsSingleFlightStats(),
+    placeDetails: getPlaceDetailsStats(),
+    placeIndex: getPlaceIndexStats(),
+    routeCache: getRouteCacheStats(),
+    lastRouteStore: getLastRouteStoreStats(),
+    outbound: getOutboundSchedulerStats(),
+    voiceSessions: getVoiceSessionStats(),
+    historyPayloads: getRoutePayloadCodecStats(),
+    historyWrites: getHistoryWriteQueueStats(),
+    sqlStatements: getStatementStats()
+  });
+});
 
 const server = app.listen(PORT, () => {
   console.log('=== Server API Config ===');
@@ -102,19 +117,27 @@ const shutdown = (reason, exitCode = 0) => {
   if (shuttingDown) return;
   shuttingDown = true;
 
-  clearRouteCache(reason);
+  console.log(`Shutting down (${reason})`);
 
-  server.close(() => {
+  // Write queued history entries before exiting, including any queued by
+  // requests that finish while the server is closing.
+  const exit = () => {
+    try {
+      flushHistoryQueue();
+    } catch (error) {
+      console.error('Failed to flush history queue:', error);
+    }
     process.exit(exitCode);
-  });
+  };
+
+  server.close(exit);
 
   // Force exit if close hangs due to open keep-alive connections.
-  setTimeout(() => process.exit(exitCode), 5000).unref();
+  setTimeout(exit, 5000).unref();
 };
 
 process.on('SIGINT', () => shutdown('SIGINT'));
 process.on('SIGTERM', () => shutdown('SIGTERM'));
-process.on('exit', () => clearRouteCache('process exit'));
 process.on('uncaughtException', (error) => {
   console.error('Uncaught exception:', error);
   shutdown('uncaughtException', 1);
@@ -1,25 +1,49 @@
 import express from 'express';
 import { requireAuth } from '../middleware/auth.js';
-import { getHistory, getHistoryById, deleteHistory, getRecentDestinations } from '../services/historyService.js';
+import {
+  getHistory,
+  getHistoryById,
+  getHistoryVersion,
+  decodeHistoryCursor,
+  deleteHistory,
+  getRecentDestinations
+} from '../services/historyService.js';
 
 const router = express.Router();
 
-// Get user's history
+// Get user's history as summaries; the full route is loaded per item via GET /:id.
+// Pass the previous response's nextCursor as ?cursor= for the next page.
 router.get('/', requireAuth, (req, res) => {
   try {
-    const limit = parseInt(req.query.limit) || 50;
-    const offset = parseInt(req.query.offset) || 0;
+    const limit = Math.min(parseInt(req.query.limit) || 50, 100);
+    const after = req.query.cursor ? decodeHistoryCursor(req.query.cursor) : null;
+    if (req.query.cursor && !after) {
+      return res.status(400).json({ error: 'Invalid cursor' });
+    }
+
+    // The list only changes when an entry is added or deleted, so answer
+    // If-None-Match before running the list query.
+    res.set('ETag', `W/"history-${req.userId}-${getHistoryVersion(req.userId)}"`);
+    res.set('Cache-Control', 'private, no-cache');
+    if (req.fresh) {
+      return res.status(304).end();
+    }
 
-    const history = getHistory(req.userId, limit, offset);
+    const { entries, nextCursor } = getHistory(req.userId, limit, after);
 
     res.json({
       success: true,
-      history: history.map(item => ({
+      nextCursor,
+      history: entries.map(item => ({
         id: item.id,
         actionType: item.action_type,
         transcript: item.transcript,
-        stops: JSON.parse(item.stops_json),
-        route: JSON.parse(item.route_data_json),
+        stopNames: item.stop_names,
+        totals: {
+          distanceMeters: item.total_distance_m,
+          durationSeconds: item.total_duration_s
+        },
+        polylineLength: item.polyline_length,
         createdAt: item.created_at
       }))
     });
@@ -55,6 +79,13 @@ router.get('/:id', requireAuth, (req, res) => {
       return res.status(404).json({ error: 'History item not found' });
     }
 
+    // History entries never change after they are saved
+    res.set('ETag', `W/"history-item-${item.id}"`);
+    res.set('Cache-Control', 'private, no-cache');
+    if (req.fresh) {
+      return res.status(304).end();
+    }
+
     res.json({
       success: true,
       history: {
@@ -62,7 +93,7 @@ router.get('/:id', requireAuth, (req, res) => {
         actionType: item.action_type,
         transcript: item.transcript,
         stops: JSON.parse(item.stops_json),
-        route: JSON.parse(item.route_data_json),
+        route: item.route_data,
         createdAt: item.created_at
       }
     });
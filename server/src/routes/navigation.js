@@ -3,81 +3,36 @@ import multer from 'multer';
 import fs from 'fs';
 import path from 'path';
 import { fileURLToPath } from 'url';
-import { extractStopsFromAudio } from '../services/gemini.js';
-import { getMultiStopRoute, geocodeLocation, findNearestPlaces } from '../services/maps.js';
+import { extractStopsFromAudioFile, extractStopsFromText } from '../services/gemini.js';
+import { getMultiStopRoute, geocodeLocation, findNearestPlaces, prefetchStopGeocodes } from '../services/maps.js';
 import { isValidEmail, sendRouteEmail } from '../services/email.js';
 import {
+  findCoffeeShopsAlongRoute,
   findNearbyCoffeeShops,
   findNearbyFoodShops
 } from '../services/placeService.js';
-import { recommendCoffeeShops, formatShopForDisplay } from '../utils/coffeeShopRecommender.js';
+import { createShopRanker, recommendCoffeeShops, formatShopForDisplay } from '../utils/coffeeShopRecommender.js';
 import { optionalAuth } from '../middleware/auth.js';
 import { saveToHistory } from '../services/historyService.js';
+import { hashingDiskStorage } from '../utils/hashingDiskStorage.js';
+import { getLastRoute, getLastRouteOwner, setLastRoute } from '../services/lastRouteStore.js';
+import {
+  appendVoiceChunk,
+  closeVoiceSession,
+  createVoiceSession,
+  finishVoiceSession,
+  getVoiceSession,
+  getVoiceSessionOwner
+} from '../services/voiceSessionStore.js';
 
 const __filename = fileURLToPath(import.meta.url);
 const __dirname = path.dirname(__filename);
 const VOICE_BUFFER_DIR = path.resolve(__dirname, '../../voice_buffer');
-const ROUTE_CACHE_PATH = path.resolve(__dirname, '../../route_cache.json');
-const ROUTE_CACHE_VERSION = 1;
+// Uploads land here first; kept next to voice_buffer/ so saving is a same-volume rename.
+const VOICE_UPLOAD_DIR = path.resolve(__dirname, '../../voice_uploads');
 
 const router = express.Router();
 
-function sanitizeStopsForCache(stops = []) {
-  return stops.map((stop) => {
-    if (typeof stop === 'string') return stop;
-    return stop?.searchQuery || stop?.original || String(stop);
-  });
-}
-
-async function writeRouteCache(route, source, stops = [], transcript = null) {
-  const payload = {
-    version: ROUTE_CACHE_VERSION,
-    updatedAt: new Date().toISOString(),
-    source,
-    stops: sanitizeStopsForCache(stops),
-    route,
-    transcript: transcript || null
-  };
-
-  const tempPath = `${ROUTE_CACHE_PATH}.${process.pid}.${Date.now()}.tmp`;
-  await fs.promises.writeFile(tempPath, JSON.stringify(payload, null, 2), 'utf-8');
-  await fs.promises.rename(tempPath, ROUTE_CACHE_PATH);
-  return payload;
-}
-
-function normalizeCachePayload(raw) {
-  // Backward compatibility: legacy file stored route object directly.
-  if (raw && raw.route) {
-    return {
-      version: raw.version || ROUTE_CACHE_VERSION,
-      updatedAt: raw.updatedAt || null,
-      source: raw.source || 'unknown',
-      stops: Array.isArray(raw.stops) ? raw.stops : [],
-      route: raw.route,
-      transcript: raw.transcript || null
-    };
-  }
-
-  return {
-    version: ROUTE_CACHE_VERSION,
-    updatedAt: null,
-    source: 'legacy',
-    stops: [],
-    route: raw || null,
-    transcript: null
-  };
-}
-
-async function readRouteCache() {
-  try {
-    const data = await fs.promises.readFile(ROUTE_CACHE_PATH, 'utf-8');
-    return normalizeCachePayload(JSON.parse(data));
-  } catch (error) {
-    if (error?.code === 'ENOENT') return null;
-    throw error;
-  }
-}
-
 function normalizeLocationHint(value) {
   if (!value || typeof value !== 'object') return null;
 
@@ -150,8 +105,10 @@ function findConfirmationStopIndexes(stops = [], confidenceThreshold = null) {
   return indexes;
 }
 
-// Configure multer for audio file uploads
-const storage = multer.memoryStorage();
+// Configure multer for audio file uploads.
+// Each upload is streamed straight to a temp file (with backpressure) and hashed in the
+// same pass, so memory per request stays bounded and req.file.sha256 keys the Gemini cache.
+const storage = hashingDiskStorage({ destination: VOICE_UPLOAD_DIR });
 const upload = multer({
   storage: storage,
   limits: {
@@ -160,28 +117,182 @@ const upload = multer({
 });
 
 /**
- * POST /api/process-voice
- * Process voice input and return navigation route
+ * Delete a multer temp upload. No-op if it was already moved into voice_buffer/.
  */
-router.post('/process-voice', optionalAuth, upload.single('audio'), async (req, res) => {
-  console.log('=== /api/process-voice called ===');
+async function removeUploadedFile(file) {
+  if (!file?.path) return;
   try {
-    if (!req.file) {
-      console.log('No file received');
-      return res.status(400).json({ error: 'No audio file provided' });
-    }
+    await fs.promises.rm(file.path, { force: true });
+  } catch (error) {
+    console.error('Failed to remove uploaded audio:', error);
+  }
+}
 
-    console.log('Received audio file:', {
-      mimetype: req.file.mimetype,
-      size: req.file.size,
-      originalname: req.file.originalname
+/**
+ * Parse a JSON context field. Multipart uploads send it as a string, JSON bodies as an object.
+ */
+function parseJsonField(value) {
+  return typeof value === 'string' ? JSON.parse(value) : value;
+}
+
+/**
+ * Location bias for geocoding a command's stops: the user's location, plus the midpoint
+ * of the current route when stops are being added to it.
+ * @returns {Object|null} - { userLocation?, routeMidpoint?, destination? } or null
+ */
+function buildGeocodingContext(commandType, currentRoute, userLocation) {
+  let geocodingContext = null;
+
+  if (userLocation) {
+    geocodingContext = {
+      userLocation: { lat: userLocation.lat, lng: userLocation.lng }
+    };
+    console.log(`🎯 Using user location for geocoding: (${userLocation.lat.toFixed(4)}, ${userLocation.lng.toFixed(4)})`);
+  }
+
+  if ((commandType === 'add_stop' || commandType === 'insert_stop') && currentRoute?.stops?.length > 0) {
+    const existingStops = currentRoute.stops.filter((s) => {
+      const lat = Number(s?.lat);
+      const lng = Number(s?.lng);
+      return Number.isFinite(lat) && Number.isFinite(lng);
     });
+    if (existingStops.length > 0) {
+      const avgLat = existingStops.reduce((sum, s) => sum + Number(s.lat), 0) / existingStops.length;
+      const avgLng = existingStops.reduce((sum, s) => sum + Number(s.lng), 0) / existingStops.length;
+
+      if (!geocodingContext) {
+        geocodingContext = {};
+      }
+      geocodingContext.routeMidpoint = { lat: avgLat, lng: avgLng };
+      geocodingContext.destination = existingStops[existingStops.length - 1];
+      console.log(`🎯 Also using route context for geocoding: midpoint (${avgLat.toFixed(4)}, ${avgLng.toFixed(4)})`);
+    }
+  }
+
+  return geocodingContext;
+}
+
+/**
+ * Switch the response to NDJSON (one {"event","data"} object per line) and return the emitter.
+ */
+function startNdjsonStream(res) {
+  res.status(200);
+  res.setHeader('Content-Type', 'application/x-ndjson; charset=utf-8');
+  res.setHeader('Cache-Control', 'no-cache');
+  res.setHeader('X-Accel-Buffering', 'no');
+  res.flushHeaders();
+
+  return (event, data) => {
+    if (res.writableEnded || res.destroyed) return;
+    res.write(`${JSON.stringify({ event, data })}\n`);
+  };
+}
+
+/**
+ * Partial-transcript hook for voice sessions: geocode the stops heard so far in the background.
+ * The last stop is skipped because the user may still be saying it, and so is anything after
+ * a "nearest X" stop, whose location (and so the bias for the stops after it) isn't known yet.
+ */
+async function prefetchHeardStops(extraction, session) {
+  if (extraction.error || !Array.isArray(extraction.stops)) return;
+
+  const heardStops = extraction.stops.slice(0, -1);
+  const nearestIndex = heardStops.findIndex((stop) => stop.nearestSearch === true);
+  const stops = nearestIndex >= 0 ? heardStops.slice(0, nearestIndex) : heardStops;
+  if (stops.length === 0) return;
+
+  const userLocation = normalizeLocationHint(session.context.userLocation);
+  const geocodingContext = buildGeocodingContext(
+    extraction.commandType || 'new_route',
+    session.context.currentRoute,
+    userLocation
+  );
+  const resolved = await prefetchStopGeocodes(stops, geocodingContext);
+  console.log(`⚡ Voice session ${session.id}: pre-geocoded ${resolved}/${stops.length} stops heard so far`);
+}
+
+/**
+ * Run the voice pipeline (Gemini extraction → geocoding → routing) for one upload.
+ * @param {Object} req - Express request with multer file and optional auth
+ * @param {Function} emit - Optional stage callback (event, data) for streaming clients
+ * @returns {Promise<{status: number, body: Object}>} - Final HTTP status and JSON body
+ */
+async function processVoiceRequest(req, emit = () => {}) {
+  if (!req.file) {
+    console.log('No file received');
+    return { status: 400, body: { error: 'No audio file provided' } };
+  }
+
+  console.log('Received audio file:', {
+    mimetype: req.file.mimetype,
+    size: req.file.size,
+    originalname: req.file.originalname
+  });
+
+  return processNavigationCommand(req, {
+    source: 'process-voice',
+    extract: (currentRoute) => extractStopsFromAudioFile(
+      req.file.path,
+      req.file.mimetype,
+      currentRoute,
+      {
+        audioHash: req.file.sha256,
+        bypassCache: req.body.bypass_cache === 'true'
+      }
+    ),
+    onExtracted: async (geminiResult) => {
+      // Save audio to voice_buffer/ only if it's a new recording (not from buffer)
+      if (req.body.from_buffer === 'true') return;
+      fs.mkdirSync(VOICE_BUFFER_DIR, { recursive: true });
+      const waypoints = geminiResult.stops.map(s => s.original.replace(/[\/\\:*?"<>|]/g, '_')).join(', ');
+      const bufferFilename = `[${waypoints}].mp3`;
+      const bufferPath = path.join(VOICE_BUFFER_DIR, bufferFilename);
+      try {
+        // The upload is already on disk - move it instead of writing a second copy
+        await fs.promises.rename(req.file.path, bufferPath);
+        console.log('Saved voice buffer:', bufferPath);
+      } catch (err) {
+        console.error('Failed to save voice buffer:', err);
+      }
+    }
+  }, emit);
+}
 
+/**
+ * Run the same pipeline for a typed or pre-transcribed command (req.body.text).
+ * @param {Object} req - Express request with JSON body and optional auth
+ * @returns {Promise<{status: number, body: Object}>} - Final HTTP status and JSON body
+ */
+async function processTextRequest(req) {
+  const text = typeof req.body?.text === 'string' ? req.body.text.trim() : '';
+  if (!text) {
+    return { status: 400, body: { error: 'No text provided' } };
+  }
+
+  console.log('Received text command:', text);
+  return processNavigationCommand(req, {
+    source: 'process-text',
+    extract: (currentRoute) => extractStopsFromText(text, currentRoute)
+  });
+}
+
+/**
+ * Shared pipeline after input handling: stop extraction → geocoding → routing.
+ * @param {Object} req - Express request carrying currentRoute/userLocation context and optional auth
+ * @param {Object} input - Input-specific hooks
+ * @param {string} input.source - Endpoint recorded with the cached last route ("process-voice", "process-text")
+ * @param {Function} input.extract - (currentRoute) => Promise of the extraction result
+ * @param {Function} input.onExtracted - Optional hook run once stops were extracted successfully
+ * @param {Function} emit - Optional stage callback (event, data) for streaming clients
+ * @returns {Promise<{status: number, body: Object}>} - Final HTTP status and JSON body
+ */
+async function processNavigationCommand(req, input, emit = () => {}) {
+  try {
     // Parse current route from request body if provided
     let currentRoute = null;
     if (req.body.currentRoute) {
       try {
-        currentRoute = JSON.parse(req.body.currentRoute);
+        currentRoute = parseJsonField(req.body.currentRoute);
         console.log('✅ Current route context provided:', {
           stops: currentRoute.stops?.length || 0,
           stopNames: currentRoute.stops?.map(s => s.name || s.address).join(' → ')
@@ -197,7 +308,7 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
     let userLocation = null;
     if (req.body.userLocation) {
       try {
-        const parsedLocation = JSON.parse(req.body.userLocation);
+        const parsedLocation = parseJsonField(req.body.userLocation);
         userLocation = normalizeLocationHint(parsedLocation);
 
         if (userLocation) {
@@ -213,16 +324,12 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
       }
     }
 
-    console.log('Processing with Gemini...');
+    console.log('Extracting stops...');
 
-    // Step 1: Extract stops from audio using Gemini
+    // Step 1: Extract stops (Gemini, or the local parser for simple typed commands)
     let geminiResult;
     try {
-      geminiResult = await extractStopsFromAudio(
-        req.file.buffer,
-        req.file.mimetype,
-        currentRoute
-      );
+      geminiResult = await input.extract(currentRoute);
       console.log('\n========== GEMINI EXTRACTION RESULT ==========');
       console.log('📝 Transcript:', geminiResult.transcript);
       console.log('🎯 Command type:', geminiResult.commandType);
@@ -237,41 +344,45 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
         console.log(`  Confidence: ${stop.confidence}`);
       });
       console.log('==============================================\n');
+
+      emit('transcript', {
+        transcript: geminiResult.transcript || null,
+        commandType: geminiResult.commandType || 'new_route',
+        extractedStops: Array.isArray(geminiResult.stops) ? geminiResult.stops : []
+      });
     } catch (geminiError) {
       console.error('Gemini error:', geminiError);
-      return res.status(500).json({ error: 'Gemini API error: ' + geminiError.message });
+      return { status: 500, body: { error: 'Gemini API error: ' + geminiError.message } };
     }
 
     // Handle standalone nearby coffee shop search (no route needed)
     if (geminiResult.nearbySearch) {
-      return res.json({
-        success: true,
-        transcript: geminiResult.transcript || null,
-        nearbySearch: true,
-        extractedStops: [],
-        route: null,
-        addCoffeeShop: false,
-        coffeeShopPreference: null,
-        warnings: []
-      });
+      return {
+        status: 200,
+        body: {
+          success: true,
+          transcript: geminiResult.transcript || null,
+          nearbySearch: true,
+          extractedStops: [],
+          route: null,
+          addCoffeeShop: false,
+          coffeeShopPreference: null,
+          warnings: []
+        }
+      };
     }
 
     if (geminiResult.error || !Array.isArray(geminiResult.stops) || geminiResult.stops.length === 0) {
-      return res.status(400).json({
-        error: geminiResult.error || 'No locations found in audio'
-      });
+      return {
+        status: 400,
+        body: {
+          error: geminiResult.error || 'No locations found in request'
+        }
+      };
     }
 
-    // Save audio to voice_buffer/ only if it's a new recording (not from buffer)
-    if (req.body.from_buffer !== 'true') {
-      fs.mkdirSync(VOICE_BUFFER_DIR, { recursive: true });
-      const waypoints = geminiResult.stops.map(s => s.original.replace(/[\/\\:*?"<>|]/g, '_')).join(', ');
-      const bufferFilename = `[${waypoints}].mp3`;
-      const bufferPath = path.join(VOICE_BUFFER_DIR, bufferFilename);
-      fs.writeFile(bufferPath, req.file.buffer, (err) => {
-        if (err) console.error('Failed to save voice buffer:', err);
-        else console.log('Saved voice buffer:', bufferPath);
-      });
+    if (input.onExtracted) {
+      await input.onExtracted(geminiResult);
     }
 
     // Log extracted stops with their types
@@ -315,9 +426,12 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
           console.error('needsCurrentLocation=true but userLocation is missing.');
           console.error('  req.body.userLocation raw value:', req.body.userLocation);
           console.error('  Parsed userLocation variable:', userLocation);
-          return res.status(400).json({
-            error: 'This command requires location access. Please enable location services or specify a starting point (e.g. "Navigate from A to B").'
-          });
+          return {
+            status: 400,
+            body: {
+              error: 'This command requires location access. Please enable location services or specify a starting point (e.g. "Navigate from A to B").'
+            }
+          };
         }
       }
 
@@ -339,16 +453,22 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
 
       if (!currentRoute || !currentRoute.stops || currentRoute.stops.length === 0) {
         console.log('❌ No current route found - cannot add stop');
-        return res.status(400).json({
-          error: 'Cannot add stop - no existing route found. Please create a route first.'
-        });
+        return {
+          status: 400,
+          body: {
+            error: 'Cannot add stop - no existing route found. Please create a route first.'
+          }
+        };
       }
 
       // Validate: should only have ONE stop for add/insert commands
       if (geminiResult.stops.length === 0) {
-        return res.status(400).json({
-          error: 'No location found to add/insert'
-        });
+        return {
+          status: 400,
+          body: {
+            error: 'No location found to add/insert'
+          }
+        };
       }
       if (geminiResult.stops.length > 1) {
         console.warn(`⚠️ Expected 1 stop for ${commandType}, got ${geminiResult.stops.length}. Using first stop only.`);
@@ -411,12 +531,15 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
       if (isDuplicate) {
         console.log('🚫 DUPLICATE DETECTED - Stop already exists in route, skipping');
         console.log('=====================================\n');
-        return res.json({
-          success: true,
-          message: 'This location is already in your route',
-          route: currentRoute,
-          commandType: 'duplicate_stop'
-        });
+        return {
+          status: 200,
+          body: {
+            success: true,
+            message: 'This location is already in your route',
+            route: currentRoute,
+            commandType: 'duplicate_stop'
+          }
+        };
       }
 
       console.log('✅ No duplicate found - proceeding to add stop');
@@ -462,16 +585,22 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
     } else if (commandType === 'replace_stop') {
       // Replace existing stop
       if (!currentRoute || !currentRoute.stops || currentRoute.stops.length === 0) {
-        return res.status(400).json({
-          error: 'Cannot replace stop - no existing route found.'
-        });
+        return {
+          status: 400,
+          body: {
+            error: 'Cannot replace stop - no existing route found.'
+          }
+        };
       }
 
       // Validate: should only have ONE stop for replace commands
       if (geminiResult.stops.length === 0) {
-        return res.status(400).json({
-          error: 'No location found to replace with'
-        });
+        return {
+          status: 400,
+          body: {
+            error: 'No location found to replace with'
+          }
+        };
       }
       if (geminiResult.stops.length > 1) {
         console.warn(`⚠️ Expected 1 stop for ${commandType}, got ${geminiResult.stops.length}. Using first stop only.`);
@@ -485,9 +614,12 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
         finalStops[insertPos.referenceIndex] = newStop;
         console.log(`Replacing stop ${insertPos.referenceIndex}`);
       } else {
-        return res.status(400).json({
-          error: 'Cannot replace stop - invalid reference index.'
-        });
+        return {
+          status: 400,
+          body: {
+            error: 'Cannot replace stop - invalid reference index.'
+          }
+        };
       }
     }
 
@@ -499,33 +631,7 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
 
     // Build geocoding context with user location and route context (needed for both
     // pre-geocoding low-confidence stops and the main route calculation)
-    let geocodingContext = null;
-
-    if (userLocation) {
-      geocodingContext = {
-        userLocation: { lat: userLocation.lat, lng: userLocation.lng }
-      };
-      console.log(`🎯 Using user location for geocoding: (${userLocation.lat.toFixed(4)}, ${userLocation.lng.toFixed(4)})`);
-    }
-
-    if ((commandType === 'add_stop' || commandType === 'insert_stop') && currentRoute?.stops?.length > 0) {
-      const existingStops = currentRoute.stops.filter((s) => {
-        const lat = Number(s?.lat);
-        const lng = Number(s?.lng);
-        return Number.isFinite(lat) && Number.isFinite(lng);
-      });
-      if (existingStops.length > 0) {
-        const avgLat = existingStops.reduce((sum, s) => sum + Number(s.lat), 0) / existingStops.length;
-        const avgLng = existingStops.reduce((sum, s) => sum + Number(s.lng), 0) / existingStops.length;
-
-        if (!geocodingContext) {
-          geocodingContext = {};
-        }
-        geocodingContext.routeMidpoint = { lat: avgLat, lng: avgLng };
-        geocodingContext.destination = existingStops[existingStops.length - 1];
-        console.log(`🎯 Also using route context for geocoding: midpoint (${avgLat.toFixed(4)}, ${avgLng.toFixed(4)})`);
-      }
-    }
+    const geocodingContext = buildGeocodingContext(commandType, currentRoute, userLocation);
 
     // Step 2.5a: Handle nearestSearch stops — query Places API for the 5 nearest candidates
     const nearestSearchStops = finalStops.filter(stop => stop.nearestSearch === true);
@@ -596,15 +702,18 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
         .filter(idx => idx >= 0);
 
       if (nearestConfirmIndexes.length > 0) {
-        return res.json({
-          success: true,
-          needsConfirmation: true,
-          transcript: geminiResult.transcript || null,
-          commandType: geminiResult.commandType || 'new_route',
-          stops: finalStops,
-          confirmationStopIndexes: nearestConfirmIndexes,
-          message: 'Please select the nearest location for each stop'
-        });
+        return {
+          status: 200,
+          body: {
+            success: true,
+            needsConfirmation: true,
+            transcript: geminiResult.transcript || null,
+            commandType: geminiResult.commandType || 'new_route',
+            stops: finalStops,
+            confirmationStopIndexes: nearestConfirmIndexes,
+            message: 'Please select the nearest location for each stop'
+          }
+        };
       }
     }
 
@@ -653,16 +762,19 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
         }
       }
 
-      return res.json({
-        success: true,
-        needsConfirmation: true,
-        transcript: geminiResult.transcript || null,
-        commandType: geminiResult.commandType || 'new_route',
-        stops: finalStops,
-        confirmationStopIndexes: lowConfidenceStopIndexes,
-        lowConfidenceStops: lowConfidenceStops.map(s => s.original),
-        message: 'Please confirm the detected addresses before proceeding'
-      });
+      return {
+        status: 200,
+        body: {
+          success: true,
+          needsConfirmation: true,
+          transcript: geminiResult.transcript || null,
+          commandType: geminiResult.commandType || 'new_route',
+          stops: finalStops,
+          confirmationStopIndexes: lowConfidenceStopIndexes,
+          lowConfidenceStops: lowConfidenceStops.map(s => s.original),
+          message: 'Please confirm the detected addresses before proceeding'
+        }
+      };
     }
 
     // Step 3: Get route from Google Maps
@@ -670,7 +782,9 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
 
     let routeData;
     try {
-      routeData = await getMultiStopRoute(finalStops, geocodingContext);
+      routeData = await getMultiStopRoute(finalStops, geocodingContext, {
+        onStopGeocoded: (index, stop) => emit('stop', { index, total: finalStops.length, stop })
+      });
     } catch (routeError) {
       if (routeError?.code === 'ADDRESS_CONFIRMATION_REQUIRED') {
         console.warn('Address confirmation required before route generation');
@@ -680,17 +794,20 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
           confirmationStops.length
         );
         const fallbackIndexes = findConfirmationStopIndexes(confirmationStops);
-        return res.json({
-          success: true,
-          needsConfirmation: true,
-          transcript: geminiResult.transcript || null,
-          commandType: geminiResult.commandType || 'new_route',
-          stops: confirmationStops,
-          confirmationStopIndexes: confirmationStopIndexes.length > 0
-            ? confirmationStopIndexes
-            : (fallbackIndexes.length > 0 ? fallbackIndexes : confirmationStops.map((_, index) => index)),
-          message: routeError.confirmationReason || 'Please confirm the ambiguous address before continuing'
-        });
+        return {
+          status: 200,
+          body: {
+            success: true,
+            needsConfirmation: true,
+            transcript: geminiResult.transcript || null,
+            commandType: geminiResult.commandType || 'new_route',
+            stops: confirmationStops,
+            confirmationStopIndexes: confirmationStopIndexes.length > 0
+              ? confirmationStopIndexes
+              : (fallbackIndexes.length > 0 ? fallbackIndexes : confirmationStops.map((_, index) => index)),
+            message: routeError.confirmationReason || 'Please confirm the ambiguous address before continuing'
+          }
+        };
       }
       throw routeError;
     }
@@ -710,6 +827,13 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
     console.log('⏱️  Total duration:', routeData.totalDuration);
     console.log('===============================================\n');
 
+    emit('route', {
+      stops: routeData.stops,
+      overview_polyline: routeData.overview_polyline,
+      bounds: routeData.bounds,
+      totals: routeData.totals
+    });
+
     const result = {
       success: true,
       transcript: geminiResult.transcript || null,
@@ -723,41 +847,173 @@ router.post('/process-voice', optionalAuth, upload.single('audio'), async (req,
     };
 
     try {
-      const cacheMeta = await writeRouteCache(routeData, 'process-voice', geminiResult.stops, geminiResult.transcript);
+      const cacheMeta = setLastRoute(getLastRouteOwner(req), routeData, input.source, geminiResult.stops, geminiResult.transcript);
       result.cache = {
         version: cacheMeta.version,
         updatedAt: cacheMeta.updatedAt,
         source: cacheMeta.source
       };
-      console.log('Cached route to', ROUTE_CACHE_PATH);
     } catch (cacheError) {
       console.error('Failed to cache route:', cacheError);
     }
 
-    // Save to history if user is authenticated
+    // Save to history if user is authenticated (queued - written in the next batch)
     if (req.userId) {
-      try {
-        await saveToHistory(
-          req.userId,
-          geminiResult.commandType || 'new_route',
-          geminiResult.transcript,
-          geminiResult.stops,
-          routeData
-        );
-        console.log('Saved route to history for user', req.userId);
-      } catch (historyError) {
-        console.error('Failed to save to history:', historyError);
+      saveToHistory(
+        req.userId,
+        geminiResult.commandType || 'new_route',
+        geminiResult.transcript,
+        geminiResult.stops,
+        routeData
+      ).catch((historyError) => {
         // Don't fail the request if history save fails
-      }
+        console.error('Failed to save to history:', historyError);
+      });
     }
 
-    res.json(result);
+    return { status: 200, body: result };
   } catch (error) {
     console.error('Error processing voice:', error);
-    res.status(500).json({
-      error: error.message || 'Failed to process voice input'
-    });
+    return {
+      status: 500,
+      body: { error: error.message || 'Failed to process voice input' }
+    };
   }
+}
+
+/**
+ * POST /api/process-voice
+ * Process voice input and return navigation route
+ */
+router.post('/process-voice', optionalAuth, upload.single('audio'), async (req, res) => {
+  console.log('=== /api/process-voice called ===');
+  const { status, body } = await processVoiceRequest(req);
+  await removeUploadedFile(req.file);
+  res.status(status).json(body);
+});
+
+/**
+ * POST /api/process-text
+ * Same pipeline as /process-voice for a typed or pre-transcribed command.
+ * Body: { text, currentRoute?, userLocation? } - simple commands are parsed without Gemini.
+ */
+router.post('/process-text', optionalAuth, async (req, res) => {
+  console.log('=== /api/process-text called ===');
+  const { status, body } = await processTextRequest(req);
+  res.status(status).json(body);
+});
+
+/**
+ * POST /api/process-voice/stream
+ * Same pipeline as /process-voice, streamed as NDJSON (one JSON object per line):
+ *   {"event":"transcript","data":{...}}  as soon as Gemini returns
+ *   {"event":"stop","data":{...}}        once per stop, in route order
+ *   {"event":"route","data":{...}}       polyline, bounds and totals
+ *   {"event":"result"|"error","data":{status, body}}  final payload, same body as /process-voice
+ */
+router.post('/process-voice/stream', optionalAuth, upload.single('audio'), async (req, res) => {
+  console.log('=== /api/process-voice/stream called ===');
+
+  const emit = startNdjsonStream(res);
+  const { status, body } = await processVoiceRequest(req, emit);
+  await removeUploadedFile(req.file);
+  emit(status >= 400 ? 'error' : 'result', { status, body });
+  res.end();
+});
+
+/**
+ * POST /api/voice-sessions
+ * Start a chunked recording. Body: { mimeType, currentRoute?, userLocation? }
+ * While chunks arrive, the audio heard so far is transcribed in the background and the
+ * stops already spoken are geocoded, so finish mostly hits warm caches.
+ * Sessions belong to the logged-in user or guest session that created them.
+ */
+router.post('/voice-sessions', optionalAuth, (req, res) => {
+  const owner = getVoiceSessionOwner(req);
+  if (!owner) {
+    return res.status(401).json({ error: 'A session is required to record' });
+  }
+
+  const { mimeType, currentRoute = null, userLocation = null } = req.body || {};
+  const { session, status, error } = createVoiceSession({
+    owner,
+    directory: VOICE_UPLOAD_DIR,
+    mimeType: typeof mimeType === 'string' ? mimeType.split(';')[0] : null,
+    context: { currentRoute, userLocation },
+    onPartialResult: prefetchHeardStops
+  });
+
+  if (!session) {
+    return res.status(status).json({ error });
+  }
+
+  console.log(`🎙️  Voice session ${session.id} started`);
+  res.status(201).json({ sessionId: session.id });
+});
+
+/**
+ * POST /api/voice-sessions/:id/chunks?seq=N
+ * Append one MediaRecorder chunk (raw body). Chunks must be sent in order.
+ */
+router.post('/voice-sessions/:id/chunks', optionalAuth, express.raw({ type: () => true, limit: '10mb' }), async (req, res) => {
+  const session = getVoiceSession(req.params.id, getVoiceSessionOwner(req));
+  if (!session) {
+    return res.status(404).json({ error: 'Voice session not found' });
+  }
+  if (!Buffer.isBuffer(req.body) || req.body.length === 0) {
+    return res.status(400).json({ error: 'Empty audio chunk' });
+  }
+
+  try {
+    const { status, error } = await appendVoiceChunk(session, Number(req.query.seq), req.body);
+    if (error) {
+      return res.status(status).json({ error });
+    }
+    res.json({ success: true, bytes: session.bytes });
+  } catch (error) {
+    console.error('Failed to append voice chunk:', error);
+    res.status(500).json({ error: 'Failed to store audio chunk' });
+  }
+});
+
+/**
+ * POST /api/voice-sessions/:id/finish
+ * Run the voice pipeline on the full recording. Streams NDJSON like /process-voice/stream.
+ */
+router.post('/voice-sessions/:id/finish', optionalAuth, async (req, res) => {
+  console.log('=== /api/voice-sessions/:id/finish called ===');
+  const session = getVoiceSession(req.params.id, getVoiceSessionOwner(req));
+  if (!session || session.finishing) {
+    return res.status(404).json({ error: 'Voice session not found' });
+  }
+
+  const emit = startNdjsonStream(res);
+  try {
+    req.file = await finishVoiceSession(session);
+    req.body = session.context;
+    const { status, body } = req.file.size > 0
+      ? await processVoiceRequest(req, emit)
+      : { status: 400, body: { error: 'No audio file provided' } };
+    emit(status >= 400 ? 'error' : 'result', { status, body });
+  } catch (error) {
+    console.error('Voice session failed:', error);
+    emit('error', { status: 500, body: { error: error.message || 'Failed to process voice input' } });
+  } finally {
+    closeVoiceSession(session, { finished: true });
+    res.end();
+  }
+});
+
+/**
+ * DELETE /api/voice-sessions/:id
+ * Abandon a recording and delete its audio.
+ */
+router.delete('/voice-sessions/:id', optionalAuth, (req, res) => {
+  const session = getVoiceSession(req.params.id, getVoiceSessionOwner(req));
+  if (session && !session.finishing) {
+    closeVoiceSession(session);
+  }
+  res.json({ success: true });
 });
 
 /**
@@ -770,11 +1026,20 @@ router.post('/reconfirm-stop', upload.single('audio'), async (req, res) => {
       return res.status(400).json({ error: 'No audio file provided' });
     }
 
-    const geminiResult = await extractStopsFromAudio(
-      req.file.buffer,
-      req.file.mimetype,
-      null
-    );
+    let geminiResult;
+    try {
+      geminiResult = await extractStopsFromAudioFile(
+        req.file.path,
+        req.file.mimetype,
+        null,
+        {
+          audioHash: req.file.sha256,
+          bypassCache: req.body.bypass_cache === 'true'
+        }
+      );
+    } finally {
+      await removeUploadedFile(req.file);
+    }
 
     if (geminiResult.error || !Array.isArray(geminiResult.stops) || geminiResult.stops.length === 0) {
       return res.status(400).json({
@@ -853,32 +1118,28 @@ router.post('/route', optionalAuth, async (req, res) => {
     let cache = null;
 
     try {
-      const cacheMeta = await writeRouteCache(routeData, 'manual-route', stops, transcript);
+      const cacheMeta = setLastRoute(getLastRouteOwner(req), routeData, 'manual-route', stops, transcript);
       cache = {
         version: cacheMeta.version,
         updatedAt: cacheMeta.updatedAt,
         source: cacheMeta.source
       };
-      console.log('Cached route to', ROUTE_CACHE_PATH);
     } catch (cacheError) {
       console.error('Failed to cache route:', cacheError);
     }
 
-    // Save to history if user is authenticated
+    // Save to history if user is authenticated (queued - written in the next batch)
     if (req.userId) {
-      try {
-        await saveToHistory(
-          req.userId,
-          'modify_route',
-          null,
-          stops,
-          routeData
-        );
-        console.log('Saved manual route to history for user', req.userId);
-      } catch (historyError) {
-        console.error('Failed to save to history:', historyError);
+      saveToHistory(
+        req.userId,
+        'modify_route',
+        null,
+        stops,
+        routeData
+      ).catch((historyError) => {
         // Don't fail the request if history save fails
-      }
+        console.error('Failed to save to history:', historyError);
+      });
     }
 
     res.json({
@@ -961,11 +1222,11 @@ router.delete('/voice-buffers/:filename', (req, res) => {
 
 /**
  * GET /api/last-route
- * Return the most recently generated route from cache
+ * Return the most recently generated route for this user (or anonymous session)
  */
-router.get('/last-route', async (req, res) => {
+router.get('/last-route', optionalAuth, async (req, res) => {
   try {
-    const cache = await readRouteCache();
+    const cache = getLastRoute(getLastRouteOwner(req));
     if (!cache) {
       return res.json({ success: true, route: null, cache: null });
     }
@@ -991,7 +1252,7 @@ router.get('/last-route', async (req, res) => {
  * POST /api/send-route-email
  * Send the current/generated route to an email with a Google Maps deep link
  */
-router.post('/send-route-email', async (req, res) => {
+router.post('/send-route-email', optionalAuth, async (req, res) => {
   try {
     const email = String(req.body?.email || '').trim();
     let route = req.body?.route || null;
@@ -1000,9 +1261,9 @@ router.post('/send-route-email', async (req, res) => {
       return res.status(400).json({ error: 'A valid email address is required' });
     }
 
-    // Allow clients to omit route and send the last cached route.
+    // Allow clients to omit route and send this user's last route.
     if (!route) {
-      const cache = await readRouteCache();
+      const cache = getLastRoute(getLastRouteOwner(req));
       route = cache?.route || null;
     }
 
@@ -1168,7 +1429,8 @@ async function findCoffeeShopsByStops(stops, radius, perStopLimit, keyword) {
 /**
  * POST /api/find-coffee-shops
  * Find and recommend coffee shops near a location or along a route.
- * When a route is provided, searches around origin and each stop.
+ * When a route is provided, searches around origin and each stop, or along the whole
+ * route polyline with searchMode: 'corridor' (ranked by proximity to the route).
  * Returns grouped results plus a flat list for map markers.
  */
 router.post('/find-coffee-shops', async (req, res) => {
@@ -1185,7 +1447,8 @@ router.post('/find-coffee-shops', async (req, res) => {
       sortBy = 'score',
       openNowOnly = false,
       perStopLimit = 5,
-      keyword
+      keyword,
+      searchMode = 'stops'
     } = req.body;
 
     const hasRoute = !!(route && route.origin && route.destination);
@@ -1195,6 +1458,33 @@ router.post('/find-coffee-shops', async (req, res) => {
       return res.status(400).json({ error: 'Latitude and longitude must be numbers' });
     }
 
+    if (hasRoute && searchMode === 'corridor') {
+      console.log('Search type: Along route corridor');
+
+      // Rank each batch of detailed shops as the along-route queries return it
+      const center = hasLocation ? { lat, lng } : { lat: Number(route.origin.lat), lng: Number(route.origin.lng) };
+      const ranker = createShopRanker(center.lat, center.lng, {
+        limit,
+        sortBy,
+        openNowOnly,
+        route,
+        maxDistance: radius
+      });
+      const shops = await findCoffeeShopsAlongRoute(route, radius, keyword || 'coffee', {
+        onShops: (batch) => ranker.add(batch)
+      });
+      const recommendations = ranker.results().map(shop => formatShopForDisplay(shop));
+
+      return res.json({
+        success: true,
+        searchType: 'corridor',
+        recommendations,
+        grouped: null,
+        totalFound: shops.length,
+        searchRadius: radius
+      });
+    }
+
     if (hasRoute) {
       console.log('Search type: By stops (open coffee shops only, excluding destination)');
 
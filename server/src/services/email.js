@@ -1,3 +1,5 @@
+import { decodePolyline } from '../utils/routeGeometry.js';
+
 let transporter = null;
 
 function parseBoolean(value, fallback = false) {
@@ -88,30 +90,6 @@ function getRouteStops(route) {
   return labels;
 }
 
-function decodePolyline(encoded) {
-  const points = [];
-  let index = 0;
-  let lat = 0;
-  let lng = 0;
-  while (index < encoded.length) {
-    for (const field of ['lat', 'lng']) {
-      let shift = 0;
-      let result = 0;
-      let byte;
-      do {
-        byte = encoded.charCodeAt(index++) - 63;
-        result |= (byte & 0x1f) << shift;
-        shift += 5;
-      } while (byte >= 0x20);
-      const delta = result & 1 ? ~(result >> 1) : result >> 1;
-      if (field === 'lat') lat += delta;
-      else lng += delta;
-    }
-    points.push({ lat: lat / 1e5, lng: lng / 1e5 });
-  }
-  return points;
-}
-
 function findPolylinePointNear(decodedPoints, target) {
   let bestDist = Infinity;
   let bestPoint = null;
@@ -129,6 +107,7 @@ function findPolylinePointNear(decodedPoints, target) {
 
 export function buildGoogleMapsDirectionsLink(route) {
   const stopLabels = getRouteStops(route);
+  let decodedPolyline = null;
   const origin = stopLabels[0];
   const destination = stopLabels[stopLabels.length - 1];
   const waypoints = (route.stops || []).slice(1, -1).map((stop, i) => {
@@ -140,8 +119,8 @@ export function buildGoogleMapsDirectionsLink(route) {
     // overview polyline we get a coordinate that's on the actual computed path.
     if (stop.via && Number.isFinite(stop.lat) && Number.isFinite(stop.lng)) {
       if (route.overview_polyline) {
-        const decoded = decodePolyline(route.overview_polyline);
-        return findPolylinePointNear(decoded, { lat: stop.lat, lng: stop.lng });
+        decodedPolyline ??= decodePolyline(route.overview_polyline);
+        return findPolylinePointNear(decodedPolyline, { lat: stop.lat, lng: stop.lng });
       }
       return `${stop.lat},${stop.lng}`;
     }
@@ -0,0 +1,182 @@
+import crypto from 'crypto';
+import fs from 'fs';
+import path from 'path';
+import { fileURLToPath } from 'url';
+import { LruCache } from '../utils/lruCache.js';
+
+/**
+ * Cache of Gemini stop-extraction results keyed by audio content.
+ * Replays from voice_buffer/ and retries after confirmation dialogs send identical
+ * audio, so the result is reused instead of paying for another LLM call.
+ * Entries live as JSON files in voice_cache/ (next to voice_buffer/) with an LRU in front.
+ * Writes trigger a sweep of the directory (at most every SWEEP_INTERVAL_MS) that deletes
+ * expired files and then the oldest ones beyond MAX_DISK_ENTRIES.
+ */
+
+const __dirname = path.dirname(fileURLToPath(import.meta.url));
+const VOICE_CACHE_DIR = path.resolve(__dirname, '../../voice_cache');
+
+const CACHE_ENABLED = process.env.GEMINI_CACHE_ENABLED !== 'false';
+const TTL_MS = Number(process.env.GEMINI_CACHE_TTL_DAYS || 30) * 24 * 60 * 60 * 1000;
+const MAX_MEMORY_ENTRIES = 200;
+const MAX_DISK_ENTRIES = Number(process.env.GEMINI_CACHE_MAX_FILES || 1000);
+const SWEEP_INTERVAL_MS = Number(process.env.GEMINI_CACHE_SWEEP_MINUTES || 10) * 60 * 1000;
+
+const memoryCache = new LruCache(MAX_MEMORY_ENTRIES);
+
+const stats = {
+  memoryHits: 0,
+  diskHits: 0,
+  misses: 0,
+  bypassed: 0,
+  writes: 0,
+  evicted: 0,
+  errors: 0
+};
+
+let lastSweepAt = 0;
+let sweeping = null;
+
+/**
+ * Hash a file on disk without loading it into memory.
+ * @param {string} filePath - File to hash
+ * @returns {Promise<string>} - Hex SHA-256 digest
+ */
+export async function hashFile(filePath) {
+  const hash = crypto.createHash('sha256');
+  for await (const chunk of fs.createReadStream(filePath)) {
+    hash.update(chunk);
+  }
+  return hash.digest('hex');
+}
+
+/**
+ * Build the cache key from the audio hash and the prompt, which embeds the
+ * current-route context string (so "add a stop" against a different route misses).
+ */
+export function buildExtractionCacheKey(audioHash, prompt) {
+  const contextDigest = crypto.createHash('sha256').update(prompt).digest('hex').slice(0, 16);
+  return `${audioHash}-${contextDigest}`;
+}
+
+function getEntryPath(key) {
+  return path.join(VOICE_CACHE_DIR, `${key}.json`);
+}
+
+export function isExtractionCacheEnabled() {
+  return CACHE_ENABLED;
+}
+
+export function recordExtractionCacheBypass() {
+  stats.bypassed += 1;
+}
+
+/**
+ * Look up a cached extraction result.
+ * @param {string} key - Key from buildExtractionCacheKey
+ * @returns {Promise<Object|null>} - A fresh copy of the result, or null on miss
+ */
+export async function getCachedExtraction(key) {
+  const serialized = memoryCache.get(key);
+  if (serialized) {
+    stats.memoryHits += 1;
+    return JSON.parse(serialized);
+  }
+
+  try {
+    const entry = JSON.parse(await fs.promises.readFile(getEntryPath(key), 'utf-8'));
+    if (entry.expiresAt > Date.now()) {
+      const resultJson = JSON.stringify(entry.result);
+      memoryCache.set(key, resultJson, entry.expiresAt - Date.now());
+      stats.diskHits += 1;
+      return entry.result;
+    }
+    await fs.promises.rm(getEntryPath(key), { force: true });
+  } catch (error) {
+    if (error?.code !== 'ENOENT') {
+      stats.errors += 1;
+      console.error('Gemini cache read failed:', error.message);
+    }
+  }
+
+  stats.misses += 1;
+  return null;
+}
+
+/**
+ * Store an extraction result. The result is serialized immediately so later
+ * mutations by the caller do not leak into the cache.
+ */
+export async function setCachedExtraction(key, result) {
+  const resultJson = JSON.stringify(result);
+  memoryCache.set(key, resultJson, TTL_MS);
+
+  try {
+    await fs.promises.mkdir(VOICE_CACHE_DIR, { recursive: true });
+    const expiresAt = Date.now() + TTL_MS;
+    await fs.promises.writeFile(
+      getEntryPath(key),
+      `{"expiresAt":${expiresAt},"result":${resultJson}}`,
+      'utf-8'
+    );
+    stats.writes += 1;
+  } catch (error) {
+    stats.errors += 1;
+    console.error('Gemini cache write failed:', error.message);
+  }
+
+  maybeSweepDiskCache();
+}
+
+function maybeSweepDiskCache() {
+  if (sweeping || Date.now() - lastSweepAt < SWEEP_INTERVAL_MS) return;
+  lastSweepAt = Date.now();
+  sweeping = sweepDiskCache()
+    .catch((error) => {
+      stats.errors += 1;
+      console.error('Gemini cache sweep failed:', error.message);
+    })
+    .finally(() => {
+      sweeping = null;
+    });
+}
+
+/**
+ * Delete expired entries, then the oldest entries beyond MAX_DISK_ENTRIES.
+ * A file's mtime is its write time, so mtime + TTL_MS is its expiry.
+ */
+async function sweepDiskCache() {
+  const names = (await fs.promises.readdir(VOICE_CACHE_DIR)).filter((name) => name.endsWith('.json'));
+  const entries = [];
+  for (const name of names) {
+    const filePath = path.join(VOICE_CACHE_DIR, name);
+    try {
+      entries.push({ filePath, writtenAt: (await fs.promises.stat(filePath)).mtimeMs });
+    } catch (error) {
+      if (error?.code !== 'ENOENT') throw error;
+    }
+  }
+
+  const now = Date.now();
+  entries.sort((a, b) => a.writtenAt - b.writtenAt);
+  const excess = Math.max(0, entries.length - MAX_DISK_ENTRIES);
+  const doomed = entries.filter((entry, index) => index < excess || entry.writtenAt + TTL_MS <= now);
+
+  for (const { filePath } of doomed) {
+    await fs.promises.rm(filePath, { force: true });
+  }
+  stats.evicted += doomed.length;
+  if (doomed.length > 0) {
+    console.log(`🧹 Gemini cache sweep removed ${doomed.length} of ${entries.length} files`);
+  }
+}
+
+export function getExtractionCacheStats() {
+  const lookups = stats.memoryHits + stats.diskHits + stats.misses;
+  return {
+    ...stats,
+    enabled: CACHE_ENABLED,
+    memoryEntries: memoryCache.size,
+    hitRate: lookups > 0 ? (stats.memoryHits + stats.diskHits) / lookups : 0
+  };
+}
@@ -1,4 +1,15 @@
+import fs from 'fs';
 import { GoogleGenAI } from '@google/genai';
+import {
+  buildExtractionCacheKey,
+  getCachedExtraction,
+  hashFile,
+  isExtractionCacheEnabled,
+  recordExtractionCacheBypass,
+  setCachedExtraction
+} from './extractionCache.js';
+import { parseSimpleCommand } from '../utils/commandParser.js';
+import { scheduleOutbound } from './outboundScheduler.js';
 
 const GEMINI_API_KEY = process.env.GEMINI_API_KEY;
 console.log(
@@ -6,6 +17,9 @@ console.log(
   GEMINI_API_KEY ? `len=${String(GEMINI_API_KEY).length}` : 'missing'
 );
 
+// Clips up to this size are sent inline (base64); larger ones use the Files API.
+const INLINE_AUDIO_MAX_BYTES = Number(process.env.GEMINI_INLINE_AUDIO_MAX_BYTES || 1024 * 1024);
+
 let ai = null;
 
 function getClient() {
@@ -16,13 +30,12 @@ function getClient() {
 }
 
 /**
- * Process audio input and extract navigation stops using Gemini
- * @param {Buffer} audioBuffer - The audio file buffer
- * @param {string} mimeType - The MIME type of the audio file
- * @param {Object} currentRoute - Optional current route context for modification commands
- * @returns {Promise<{stops: Array, commandType: string, insertPosition: Object}>} - Extracted stops with structured data
+ * Build the extraction prompt, including existing route stops for modification commands
+ * @param {Object} currentRoute - Optional current route context
+ * @param {string|null} typedText - Typed command to embed; null when the prompt accompanies audio
+ * @returns {string} - Prompt text sent alongside the audio (or on its own for typed commands)
  */
-export async function extractStopsFromAudio(audioBuffer, mimeType, currentRoute = null) {
+function buildExtractionPrompt(currentRoute, typedText = null) {
   // Build context information if there's an existing route
   let contextInfo = '';
   if (currentRoute && currentRoute.stops && currentRoute.stops.length > 0) {
@@ -32,7 +45,12 @@ export async function extractStopsFromAudio(audioBuffer, mimeType, currentRoute
     contextInfo = `\n\nCurrent route context:\nExisting stops: ${stopsList}\n`;
   }
 
-  const prompt = `Analyze this audio recording of a navigation request.
+  const inputName = typedText === null ? 'audio' : 'text';
+  const intro = typedText === null
+    ? 'Analyze this audio recording of a navigation request.'
+    : `Analyze this typed navigation request: ${JSON.stringify(typedText)}`;
+
+  const prompt = `${intro}
 Extract all locations/stops mentioned and classify each one.${contextInfo}
 
 Return ONLY a valid JSON object in this exact format, with no additional text:
@@ -167,27 +185,34 @@ Via / Pass-Through Waypoint Guidelines:
   Only intermediate stops can be via.
 - Default to via: false if unsure.
 
-If you cannot understand the audio or no locations are mentioned, return:
-{"stops": [], "commandType": "error", "error": "Could not extract locations from audio"}`;
+If you cannot understand the ${inputName} or no locations are mentioned, return:
+{"stops": [], "commandType": "error", "error": "Could not extract locations from ${inputName}"}`;
+
+  return prompt;
+}
 
+/**
+ * Send the prompt (plus an optional audio part) to Gemini and parse the JSON result
+ * @param {string} prompt - Prompt from buildExtractionPrompt
+ * @param {Object|null} audioPart - inlineData or fileData content part, or null for typed commands
+ * @returns {Promise<Object>} - Parsed extraction result with defaults applied
+ */
+async function runExtraction(prompt, audioPart = null) {
   try {
-    const response = await getClient().models.generateContent({
+    const parts = [{ text: prompt }];
+    if (audioPart) {
+      parts.push(audioPart);
+    }
+
+    const response = await scheduleOutbound('gemini', () => getClient().models.generateContent({
       model: 'gemini-3-flash-preview',
       contents: [
         {
           role: 'user',
-          parts: [
-            { text: prompt },
-            {
-              inlineData: {
-                data: audioBuffer.toString('base64'),
-                mimeType: mimeType
-              }
-            }
-          ]
+          parts
         }
       ]
-    });
+    }));
 
     const text = response.text;
     console.log('Gemini raw response:', text);
@@ -228,3 +253,102 @@ If you cannot understand the audio or no locations are mentioned, return:
     throw error;
   }
 }
+
+/**
+ * Extract navigation stops from a typed or pre-transcribed command.
+ * Simple "from A to B" / "add a stop at X" commands are parsed locally and never reach
+ * Gemini; everything else goes through the same prompt and schema as audio.
+ * @param {string} text - Command text
+ * @param {Object} currentRoute - Optional current route context for modification commands
+ * @returns {Promise<{stops: Array, commandType: string, insertPosition: Object}>} - Extracted stops with structured data
+ */
+export async function extractStopsFromText(text, currentRoute = null) {
+  const localResult = parseSimpleCommand(text, currentRoute);
+  if (localResult) {
+    console.log('⚡ Parsed text command locally - skipping LLM call');
+    return localResult;
+  }
+
+  const result = await runExtraction(buildExtractionPrompt(currentRoute, text));
+  if (!result.transcript) {
+    result.transcript = text;
+  }
+  result.source = 'gemini';
+  return result;
+}
+
+/**
+ * Extract navigation stops from an audio file already on disk.
+ * Results are cached by audio hash + route context, so replays skip Gemini entirely.
+ * Short clips are sent inline; anything larger goes through the Gemini Files API,
+ * which streams the file from disk so it is never fully held in the Node heap.
+ * @param {string} filePath - Path of the uploaded audio file
+ * @param {string} mimeType - The MIME type of the audio file
+ * @param {Object} currentRoute - Optional current route context for modification commands
+ * @param {Object} options - Optional cache controls
+ * @param {string} options.audioHash - Precomputed SHA-256 of the file (hashed from disk if omitted)
+ * @param {boolean} options.bypassCache - Skip the cache lookup (the fresh result is still stored)
+ * @param {boolean} options.useCache - Set false to neither read nor write the cache (one-off audio)
+ * @returns {Promise<{stops: Array, commandType: string, insertPosition: Object}>} - Extracted stops with structured data
+ */
+export async function extractStopsFromAudioFile(filePath, mimeType, currentRoute = null, options = {}) {
+  const { bypassCache = false, useCache = true } = options;
+  const prompt = buildExtractionPrompt(currentRoute);
+
+  let cacheKey = null;
+  if (useCache && isExtractionCacheEnabled()) {
+    const audioHash = options.audioHash || await hashFile(filePath);
+    cacheKey = buildExtractionCacheKey(audioHash, prompt);
+
+    if (bypassCache) {
+      recordExtractionCacheBypass();
+    } else {
+      const cached = await getCachedExtraction(cacheKey);
+      if (cached) {
+        console.log(`💾 Gemini cache hit (${cacheKey.slice(0, 12)}...) - skipping LLM call`);
+        return cached;
+      }
+    }
+  }
+
+  const result = await extractFromAudioFile(filePath, mimeType, prompt);
+
+  if (cacheKey && result.commandType !== 'error' && !result.error) {
+    await setCachedExtraction(cacheKey, result);
+  }
+
+  return result;
+}
+
+async function extractFromAudioFile(filePath, mimeType, prompt) {
+  const { size } = await fs.promises.stat(filePath);
+
+  if (size <= INLINE_AUDIO_MAX_BYTES) {
+    const audioBuffer = await fs.promises.readFile(filePath);
+    return runExtraction(prompt, {
+      inlineData: {
+        data: audioBuffer.toString('base64'),
+        mimeType: mimeType
+      }
+    });
+  }
+
+  console.log(`Audio is ${size} bytes - uploading via Gemini Files API`);
+  const uploaded = await scheduleOutbound('gemini', () => getClient().files.upload({
+    file: filePath,
+    config: { mimeType }
+  }));
+
+  try {
+    return await runExtraction(prompt, {
+      fileData: {
+        fileUri: uploaded.uri,
+        mimeType: uploaded.mimeType || mimeType
+      }
+    });
+  } finally {
+    getClient().files.delete({ name: uploaded.name }).catch((error) => {
+      console.error('Failed to delete Gemini upload:', error.message);
+    });
+  }
+}
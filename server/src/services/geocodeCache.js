@@ -0,0 +1,131 @@
+import { getStatements } from '../db/database.js';
+import { LruCache } from '../utils/lruCache.js';
+
+/**
+ * Two-tier cache for geocodeLocation results.
+ * Memory (LRU) sits in front of the geocode_cache table in voice-nav.db so
+ * repeat stops like "Manhattan" survive restarts without hitting Google again.
+ */
+
+const POSITIVE_TTL_MS = Number(process.env.GEOCODE_CACHE_TTL_HOURS || 24 * 7) * 60 * 60 * 1000;
+const NEGATIVE_TTL_MS = Number(process.env.GEOCODE_CACHE_NEGATIVE_TTL_MINUTES || 60) * 60 * 1000;
+const MAX_MEMORY_ENTRIES = Number(process.env.GEOCODE_CACHE_MAX_ENTRIES || 1000);
+
+// Location bias is snapped to a 0.1° grid (~11km) so nearby users share entries.
+const BIAS_CELL_DEGREES = 0.1;
+
+const memoryCache = new LruCache(MAX_MEMORY_ENTRIES);
+
+const stats = {
+  memoryHits: 0,
+  dbHits: 0,
+  negativeHits: 0,
+  misses: 0,
+  writes: 0,
+  errors: 0
+};
+
+function normalizeQuery(query) {
+  return String(query || '')
+    .toLowerCase()
+    .replace(/[^\p{L}\p{N}]+/gu, ' ')
+    .trim();
+}
+
+function toBiasCell(nearLocation) {
+  if (!nearLocation || !Number.isFinite(nearLocation.lat) || !Number.isFinite(nearLocation.lng)) {
+    return 'none';
+  }
+  const lat = Math.round(nearLocation.lat / BIAS_CELL_DEGREES) * BIAS_CELL_DEGREES;
+  const lng = Math.round(nearLocation.lng / BIAS_CELL_DEGREES) * BIAS_CELL_DEGREES;
+  return `${lat.toFixed(1)},${lng.toFixed(1)}`;
+}
+
+/**
+ * Build the cache key for a geocoding request.
+ * @param {string} query - Geocoding query built from the stop
+ * @param {string} strategy - Strategy from determineGeocodingStrategy
+ * @param {Object|null} nearLocation - Location bias, if any
+ * @param {boolean} useDistanceGuard - Whether the distance-from-hint guard applies
+ * @returns {string} - Cache key
+ */
+export function buildGeocodeCacheKey(query, strategy, nearLocation, useDistanceGuard) {
+  return [
+    strategy,
+    useDistanceGuard ? 'guard' : 'noguard',
+    toBiasCell(nearLocation),
+    normalizeQuery(query)
+  ].join('|');
+}
+
+/**
+ * Look up a cached geocode.
+ * @param {string} key - Cache key from buildGeocodeCacheKey
+ * @returns {{negative: boolean, result: Object|null, errorMessage: string|null}|null}
+ */
+export function getCachedGeocode(key) {
+  const cached = memoryCache.get(key);
+  if (cached) {
+    stats.memoryHits += 1;
+    if (cached.negative) stats.negativeHits += 1;
+    return structuredClone(cached);
+  }
+
+  try {
+    const row = getStatements().geocodeCache.get.get(key);
+
+    if (row && row.expires_at > Date.now()) {
+      const entry = row.is_negative
+        ? { negative: true, result: null, errorMessage: row.result_json }
+        : { negative: false, result: JSON.parse(row.result_json), errorMessage: null };
+
+      memoryCache.set(key, entry, row.expires_at - Date.now());
+      stats.dbHits += 1;
+      if (entry.negative) stats.negativeHits += 1;
+      return structuredClone(entry);
+    }
+  } catch (error) {
+    stats.errors += 1;
+    console.error('Geocode cache read failed:', error.message);
+  }
+
+  stats.misses += 1;
+  return null;
+}
+
+function writeEntry(key, entry, payload, ttlMs) {
+  memoryCache.set(key, entry, ttlMs);
+
+  try {
+    getStatements().geocodeCache.upsert.run(key, payload, entry.negative ? 1 : 0, Date.now() + ttlMs);
+    stats.writes += 1;
+  } catch (error) {
+    stats.errors += 1;
+    console.error('Geocode cache write failed:', error.message);
+  }
+}
+
+/**
+ * Cache a successful geocode result.
+ */
+export function setCachedGeocode(key, result) {
+  const entry = { negative: false, result: structuredClone(result), errorMessage: null };
+  writeEntry(key, entry, JSON.stringify(result), POSITIVE_TTL_MS);
+}
+
+/**
+ * Cache a ZERO_RESULTS outcome so misspelled or unknown places fail fast.
+ */
+export function setNegativeGeocode(key, errorMessage) {
+  const entry = { negative: true, result: null, errorMessage };
+  writeEntry(key, entry, errorMessage, NEGATIVE_TTL_MS);
+}
+
+export function getGeocodeCacheStats() {
+  const lookups = stats.memoryHits + stats.dbHits + stats.misses;
+  return {
+    ...stats,
+    memoryEntries: memoryCache.size,
+    hitRate: lookups > 0 ? (stats.memoryHits + stats.dbHits) / lookups : 0
+  };
+}
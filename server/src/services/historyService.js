@@ -1,135 +1,267 @@
-import { getDatabase } from '../db/database.js';
+import { getDatabase, getStatements, insertHistoryStops, summarizeRoute } from '../db/database.js';
+import { decodeRoutePayload, encodeRoutePayload } from '../utils/routePayloadCodec.js';
 
-export function saveToHistory(userId, actionType, transcript, stops, routeData) {
-  const db = getDatabase();
+// History writes are batched off the request path: entries wait in memory and are inserted
+// in one transaction (one fsync) every FLUSH_INTERVAL_MS or FLUSH_MAX_ROWS entries.
+// HISTORY_WRITE_MODE=sync restores one transaction per request, for deployments that
+// cannot lose queued entries if the process crashes (a clean shutdown always flushes).
+const WRITE_MODE = process.env.HISTORY_WRITE_MODE === 'sync' ? 'sync' : 'batched';
+const FLUSH_INTERVAL_MS = Number(process.env.HISTORY_FLUSH_INTERVAL_MS || 250);
+const FLUSH_MAX_ROWS = Number(process.env.HISTORY_FLUSH_MAX_ROWS || 50);
+
+const pendingEntries = [];
+let flushTimer = null;
 
-  const result = db.prepare(`
-    INSERT INTO history (user_id, action_type, transcript, stops_json, route_data_json)
-    VALUES (?, ?, ?, ?, ?)
-  `).run(
+const writeStats = {
+  enqueued: 0,
+  written: 0,
+  failed: 0,
+  batches: 0,
+  maxQueueDepth: 0,
+  lastFlushMs: 0,
+  totalFlushMs: 0
+};
+
+function insertHistoryEntry({ userId, actionType, transcript, stops, routeData }) {
+  const { history, historyStops } = getStatements();
+  const summary = summarizeRoute(routeData);
+  const result = history.insert.run(
     userId,
     actionType || 'new_route',
     transcript || null,
     JSON.stringify(stops),
-    JSON.stringify(routeData)
+    encodeRoutePayload(routeData),
+    summary.totalDistanceMeters,
+    summary.totalDurationSeconds,
+    summary.polylineLength
   );
-
-  console.log(`Saved route to history for user ${userId}, action: ${actionType}`);
+  insertHistoryStops(historyStops.insert, result.lastInsertRowid, routeData);
   return result.lastInsertRowid;
 }
 
-export function getHistory(userId, limit = 50, offset = 0) {
+/**
+ * Record a route action in the user's history.
+ * @returns {Promise<number>} - history.id, resolved once the entry is written
+ */
+export function saveToHistory(userId, actionType, transcript, stops, routeData) {
+  return new Promise((resolve, reject) => {
+    pendingEntries.push({ userId, actionType, transcript, stops, routeData, resolve, reject });
+    writeStats.enqueued += 1;
+    writeStats.maxQueueDepth = Math.max(writeStats.maxQueueDepth, pendingEntries.length);
+
+    if (WRITE_MODE === 'sync' || pendingEntries.length >= FLUSH_MAX_ROWS) {
+      flushHistoryQueue();
+    } else if (!flushTimer) {
+      flushTimer = setTimeout(flushHistoryQueue, FLUSH_INTERVAL_MS);
+    }
+  });
+}
+
+/**
+ * Write every queued history entry now. Called by the flush timer, before history
+ * reads (so users see their own writes) and on shutdown.
+ */
+export function flushHistoryQueue() {
+  if (flushTimer) {
+    clearTimeout(flushTimer);
+    flushTimer = null;
+  }
+  if (pendingEntries.length === 0) return;
+
   const db = getDatabase();
+  const batch = pendingEntries.splice(0, pendingEntries.length);
+  const started = performance.now();
+  const failedBefore = writeStats.failed;
+
+  try {
+    const ids = db.transaction(() => batch.map((entry) => insertHistoryEntry(entry)))();
+    batch.forEach((entry, index) => entry.resolve(ids[index]));
+    writeStats.written += batch.length;
+  } catch (error) {
+    // One bad entry rolled back the batch - retry individually so only it fails
+    console.error(`History batch of ${batch.length} failed, retrying entries individually:`, error.message);
+    for (const entry of batch) {
+      try {
+        entry.resolve(db.transaction(() => insertHistoryEntry(entry))());
+        writeStats.written += 1;
+      } catch (entryError) {
+        writeStats.failed += 1;
+        entry.reject(entryError);
+      }
+    }
+  }
+
+  writeStats.batches += 1;
+  writeStats.lastFlushMs = performance.now() - started;
+  writeStats.totalFlushMs += writeStats.lastFlushMs;
+  const saved = batch.length - (writeStats.failed - failedBefore);
+  console.log(`Saved ${saved}/${batch.length} history entries in ${writeStats.lastFlushMs.toFixed(1)}ms`);
+}
+
+export function getHistoryWriteQueueStats() {
+  return {
+    ...writeStats,
+    mode: WRITE_MODE,
+    queueDepth: pendingEntries.length,
+    avgBatchSize: writeStats.batches > 0 ? (writeStats.written + writeStats.failed) / writeStats.batches : 0,
+    avgFlushMs: writeStats.batches > 0 ? writeStats.totalFlushMs / writeStats.batches : 0
+  };
+}
+
+/**
+ * Encode the position after a history row as an opaque pagination cursor.
+ */
+function encodeHistoryCursor(row) {
+  return Buffer.from(JSON.stringify([row.created_at, row.id])).toString('base64url');
+}
+
+/**
+ * @returns {{createdAt: string, id: number}|null} - null when the cursor is malformed
+ */
+export function decodeHistoryCursor(cursor) {
+  try {
+    const [createdAt, id] = JSON.parse(Buffer.from(String(cursor), 'base64url').toString('utf8'));
+    if (typeof createdAt !== 'string' || !Number.isInteger(id)) return null;
+    return { createdAt, id };
+  } catch {
+    return null;
+  }
+}
+
+/**
+ * List history entries as summaries (no stops_json / route_data_json), newest first.
+ * Pages are keyed on (created_at, id) so deep pages cost the same as the first one and
+ * entries saved within the same second keep a stable order.
+ * @param {number} userId
+ * @param {number} limit - Page size
+ * @param {{createdAt: string, id: number}|null} after - Decoded cursor from the previous page
+ * @returns {{entries: Array<Object>, nextCursor: string|null}} - Rows get stop_names in route order
+ */
+export function getHistory(userId, limit = 50, after = null) {
+  flushHistoryQueue();
+  const { history, historyStops } = getStatements();
+
+  // Read one extra row to learn whether another page exists
+  const rows = after
+    ? history.pageAfter.all(userId, after.createdAt, after.id, limit + 1)
+    : history.firstPage.all(userId, limit + 1);
+
+  const hasMore = rows.length > limit;
+  const entries = hasMore ? rows.slice(0, limit) : rows;
+  const nextCursor = hasMore ? encodeHistoryCursor(entries[entries.length - 1]) : null;
+
+  if (entries.length === 0) return { entries, nextCursor };
+
+  const stopNames = new Map(entries.map((row) => [row.id, []]));
+  const stops = historyStops.namesForHistory.all(JSON.stringify(entries.map((row) => row.id)));
+  for (const stop of stops) {
+    stopNames.get(stop.history_id)?.push(stop.name);
+  }
+
+  return {
+    entries: entries.map((row) => ({ ...row, stop_names: stopNames.get(row.id) })),
+    nextCursor
+  };
+}
 
-  return db.prepare(`
-    SELECT id, action_type, transcript, stops_json, route_data_json, created_at
-    FROM history
-    WHERE user_id = ?
-    ORDER BY created_at DESC
-    LIMIT ? OFFSET ?
-  `).all(userId, limit, offset);
+/**
+ * Cheap fingerprint of a user's history list; changes on every insert or delete.
+ */
+export function getHistoryVersion(userId) {
+  flushHistoryQueue();
+  const { count, maxId } = getStatements().history.version.get(userId);
+  return `${count}-${maxId || 0}`;
 }
 
+/**
+ * Load one history entry with its route payload decoded (row.route_data).
+ */
 export function getHistoryById(historyId, userId) {
-  const db = getDatabase();
+  flushHistoryQueue();
+  const row = getStatements().history.findById.get(historyId, userId);
+  if (!row) return null;
 
-  return db.prepare(`
-    SELECT id, action_type, transcript, stops_json, route_data_json, created_at
-    FROM history
-    WHERE id = ? AND user_id = ?
-  `).get(historyId, userId);
+  const { route_data_json: storedRoute, ...entry } = row;
+  return { ...entry, route_data: decodeRoutePayload(storedRoute) };
 }
 
 export function deleteHistory(historyId, userId) {
+  flushHistoryQueue();
   const db = getDatabase();
+  const { history, historyStops } = getStatements();
+
+  const deleteEntry = db.transaction(() => {
+    const result = history.delete.run(historyId, userId);
 
-  const result = db.prepare(`
-    DELETE FROM history
-    WHERE id = ? AND user_id = ?
-  `).run(historyId, userId);
+    if (result.changes > 0) {
+      historyStops.deleteForHistory.run(historyId);
+    }
+    return result.changes > 0;
+  });
 
-  return result.changes > 0;
+  return deleteEntry();
 }
 
 export function getRecentDestinations(userId, limit = 10) {
-  const db = getDatabase();
+  flushHistoryQueue();
 
-  // Get recent routes - use route_data_json to get properly geocoded names
-  const history = db.prepare(`
-    SELECT route_data_json, created_at
-    FROM history
-    WHERE user_id = ?
-    ORDER BY created_at DESC
-    LIMIT 50
-  `).all(userId);
+  // Walk the user's stops newest route first (idx_history_user_page, then the
+  // history_stops primary key) and stop reading as soon as enough places are found.
+  const stops = getStatements().historyStops.recentForUser.iterate(userId);
 
   const destinations = new Map();
 
-  for (const item of history) {
-    try {
-      const route = JSON.parse(item.route_data_json);
-      if (!route.stops || route.stops.length === 0) continue;
-
-      // Extract ALL stops from the route (origin, waypoints, destination)
-      for (const stop of route.stops) {
-        // Skip if no coordinates
-        if (!stop.lat || !stop.lng) continue;
-
-        // Use coordinates as unique key
-        const key = `${stop.lat},${stop.lng}`;
-
-        // Only add if not already in map
-        if (!destinations.has(key)) {
-          // Determine display name based on type
-          let displayName = 'Unknown';
-
-          if (stop.type === 'landmark' || stop.type === 'partial') {
-            // For landmarks, use the name (e.g., "Manhattan", "Starbucks")
-            displayName = stop.name || stop.original || stop.searchQuery;
-          } else if (stop.type === 'full_address') {
-            // For addresses, try to extract business/building name or use street name
-            const name = stop.name || '';
-            const parts = name.split(/[,\s]+/);
-            // Use first part if it's not a number (likely a business/building name)
-            if (parts[0] && isNaN(parts[0])) {
-              displayName = parts[0];
-            } else if (parts.length > 1) {
-              // Use street name (e.g., "40 Wyckoff Avenue" -> "Wyckoff")
-              displayName = parts[1] || name;
-            } else {
-              displayName = name;
-            }
-          } else {
-            // Fallback to name or original
-            displayName = stop.name || stop.original || stop.searchQuery;
-          }
-
-          // Clean up the display name
-          displayName = displayName.trim();
-          if (displayName.length > 30) {
-            displayName = displayName.substring(0, 30) + '...';
-          }
-
-          destinations.set(key, {
-            name: displayName,
-            lat: stop.lat,
-            lng: stop.lng,
-            formattedAddress: stop.formattedAddress,
-            placeId: stop.placeId,
-            type: stop.type,
-            lastUsed: item.created_at
-          });
-
-          // Stop if we have enough unique places
-          if (destinations.size >= limit) break;
-        }
-      }
+  for (const stop of stops) {
+    // Use coordinates as unique key
+    const key = `${stop.lat},${stop.lng}`;
+    if (destinations.has(key)) continue;
 
-      if (destinations.size >= limit) break;
-    } catch (error) {
-      console.error('Error parsing route_data_json:', error);
-    }
+    destinations.set(key, {
+      name: formatDestinationName(stop),
+      lat: stop.lat,
+      lng: stop.lng,
+      formattedAddress: stop.formatted_address,
+      placeId: stop.place_id,
+      type: stop.type,
+      lastUsed: stop.created_at
+    });
+
+    // Stop if we have enough unique places
+    if (destinations.size >= limit) break;
   }
 
   return Array.from(destinations.values());
 }
+
+function formatDestinationName(stop) {
+  let displayName = 'Unknown';
+
+  if (stop.type === 'landmark' || stop.type === 'partial') {
+    // For landmarks, use the name (e.g., "Manhattan", "Starbucks")
+    displayName = stop.name || displayName;
+  } else if (stop.type === 'full_address') {
+    // For addresses, try to extract business/building name or use street name
+    const name = stop.name || '';
+    const parts = name.split(/[,\s]+/);
+    // Use first part if it's not a number (likely a business/building name)
+    if (parts[0] && isNaN(parts[0])) {
+      displayName = parts[0];
+    } else if (parts.length > 1) {
+      // Use street name (e.g., "40 Wyckoff Avenue" -> "Wyckoff")
+      displayName = parts[1] || name;
+    } else {
+      displayName = name;
+    }
+  } else {
+    // Fallback to name or original
+    displayName = stop.name || displayName;
+  }
+
+  // Clean up the display name
+  displayName = displayName.trim();
+  if (displayName.length > 30) {
+    displayName = displayName.substring(0, 30) + '...';
+  }
+
+  return displayName;
+}
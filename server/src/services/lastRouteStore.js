@@ -0,0 +1,131 @@
+import { getStatements } from '../db/database.js';
+import { LruCache } from '../utils/lruCache.js';
+
+/**
+ * Last generated route per signed-in user or anonymous session.
+ * Entries live in memory; with LAST_ROUTE_PERSIST=true, signed-in users' entries
+ * are also upserted into the last_routes table so they survive restarts.
+ * Anonymous sessions use the in-memory session store, so they stay memory-only.
+ */
+
+const LAST_ROUTE_VERSION = 1;
+const PERSIST = process.env.LAST_ROUTE_PERSIST === 'true';
+const MAX_ENTRIES = Number(process.env.LAST_ROUTE_MAX_ENTRIES || 5000);
+// Matches the session cookie lifetime in index.js.
+const TTL_MS = 30 * 24 * 60 * 60 * 1000;
+
+const memoryStore = new LruCache(MAX_ENTRIES);
+
+const stats = {
+  reads: 0,
+  memoryHits: 0,
+  dbHits: 0,
+  writes: 0,
+  persisted: 0,
+  errors: 0
+};
+
+/**
+ * Resolve the owner key for a request (run after optionalAuth).
+ * Anonymous requests are keyed by session; touching the session makes
+ * express-session keep it (saveUninitialized is off), so the cookie sticks.
+ * @returns {string|null} - Owner key, or null when the request has no session
+ */
+export function getLastRouteOwner(req) {
+  if (req.userId) {
+    return `user:${req.userId}`;
+  }
+  if (!req.session) {
+    return null;
+  }
+  req.session.hasLastRoute = true;
+  return `session:${req.sessionID}`;
+}
+
+function sanitizeStops(stops = []) {
+  return stops.map((stop) => {
+    if (typeof stop === 'string') return stop;
+    return stop?.searchQuery || stop?.original || String(stop);
+  });
+}
+
+/**
+ * Remember the latest route for an owner.
+ * @param {string} owner - Key from getLastRouteOwner
+ * @param {Object} route - Route data returned to the client
+ * @param {string} source - Where the route came from ("process-voice", "process-text", "manual-route")
+ * @param {Array} stops - Stops used to build the route
+ * @param {string|null} transcript - Voice transcript, if any
+ * @returns {Object} - Stored entry (version, updatedAt, source, stops, route, transcript)
+ */
+export function setLastRoute(owner, route, source, stops = [], transcript = null) {
+  const entry = {
+    version: LAST_ROUTE_VERSION,
+    updatedAt: new Date().toISOString(),
+    source,
+    stops: sanitizeStops(stops),
+    // Copy so later changes to the response object don't leak into the store
+    route: structuredClone(route),
+    transcript: transcript || null
+  };
+
+  if (!owner) {
+    return entry;
+  }
+
+  memoryStore.set(owner, entry, TTL_MS);
+  stats.writes += 1;
+
+  if (PERSIST && owner.startsWith('user:')) {
+    try {
+      getStatements().lastRoutes.upsert.run(owner, JSON.stringify(entry), entry.updatedAt);
+      stats.persisted += 1;
+    } catch (error) {
+      stats.errors += 1;
+      console.error('Failed to persist last route:', error.message);
+    }
+  }
+
+  return entry;
+}
+
+/**
+ * Get the latest route for an owner.
+ * @param {string|null} owner - Key from getLastRouteOwner
+ * @returns {Object|null} - Stored entry, or null
+ */
+export function getLastRoute(owner) {
+  if (!owner) return null;
+  stats.reads += 1;
+
+  const cached = memoryStore.get(owner);
+  if (cached) {
+    stats.memoryHits += 1;
+    return cached;
+  }
+
+  if (PERSIST && owner.startsWith('user:')) {
+    try {
+      const row = getStatements().lastRoutes.get.get(owner);
+      if (row) {
+        const entry = JSON.parse(row.payload_json);
+        memoryStore.set(owner, entry, TTL_MS);
+        stats.dbHits += 1;
+        return entry;
+      }
+    } catch (error) {
+      stats.errors += 1;
+      console.error('Failed to read persisted last route:', error.message);
+    }
+  }
+
+  return null;
+}
+
+export function getLastRouteStoreStats() {
+  return {
+    ...stats,
+    persist: PERSIST,
+    memoryEntries: memoryStore.size
+  };
+}
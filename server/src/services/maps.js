@@ -1,8 +1,35 @@
 import { Client } from '@googlemaps/google-maps-services-js';
 import { checkAddressTextMismatch } from '../utils/addressSimilarity.js';
+import { calculateDistanceKm, initialBearing, isWithinDistance } from '../utils/geo.js';
+import {
+  buildGeocodeCacheKey,
+  getCachedGeocode,
+  setCachedGeocode,
+  setNegativeGeocode
+} from './geocodeCache.js';
+import { SingleFlight } from '../utils/singleFlight.js';
+import { buildRouteCacheKey, getCachedRoute, setCachedRoute } from './routeCache.js';
+import { outboundLaneSharing, runInBackground, scheduleOutbound } from './outboundScheduler.js';
+import {
+  findIndexedNearestPlaces,
+  indexPlaces,
+  recordNearbyCoverage
+} from './placeIndex.js';
 
 const mapsClient = new Client({});
 
+// Concurrent identical upstream calls share one request (see getMapsSingleFlightStats).
+const inFlightRequests = {
+  textSearch: new SingleFlight({ lanes: outboundLaneSharing }),
+  nearbySearch: new SingleFlight({ lanes: outboundLaneSharing }),
+  geocode: new SingleFlight({ lanes: outboundLaneSharing }),
+  directions: new SingleFlight({ lanes: outboundLaneSharing })
+};
+
+function locationKey(location) {
+  return location ? `${location.lat},${location.lng}` : 'none';
+}
+
 /**
  * Get the configured routing API ("directions" or "routes")
  */
@@ -114,20 +141,23 @@ async function validateAddress(query) {
     }
   };
 
-  const response = await fetch(
+  const response = await scheduleOutbound('addressValidation', () => fetch(
     `https://addressvalidation.googleapis.com/v1:validateAddress?key=${apiKey}`,
     {
       method: 'POST',
       headers: { 'Content-Type': 'application/json' },
       body: JSON.stringify(requestBody)
     }
-  );
+  ));
 
   if (!response.ok) {
     const errorText = await response.text();
     console.log(`❌ Address Validation API error (${response.status}): ${errorText}`);
     console.log('=== END ADDRESS VALIDATION API ===\n');
-    return null;
+    // Throw rather than return null: null means "no match" and would be negative-cached
+    const error = new Error(`Address Validation API error (${response.status})`);
+    error.status = response.status;
+    throw error;
   }
 
   const data = await response.json();
@@ -188,6 +218,11 @@ async function validateAddress(query) {
  * @returns {Promise<Object>} - Place location with metadata
  */
 async function findPlaceByTextSearch(query, options = {}) {
+  const key = `${query}|${locationKey(options.locationBias)}`;
+  return inFlightRequests.textSearch.run(key, () => requestPlaceByTextSearch(query, options));
+}
+
+async function requestPlaceByTextSearch(query, options) {
   const params = {
     query: query,
     key: process.env.GOOGLE_MAPS_API_KEY
@@ -203,14 +238,18 @@ async function findPlaceByTextSearch(query, options = {}) {
   console.log('Query:', query);
   console.log('Params:', JSON.stringify(params, null, 2));
 
-  const response = await mapsClient.textSearch({ params });
+  const response = await scheduleOutbound('places', () => mapsClient.textSearch({ params }));
 
   console.log(`\n📊 Places Text Search Response: Found ${response.data.results?.length || 0} results`);
 
   if (!response.data.results || response.data.results.length === 0) {
-    console.log('❌ No places found');
+    console.log(`❌ No places found (status: ${response.data.status})`);
     console.log('=== END PLACES API ===\n');
-    throw new Error(`Could not find place: ${query}`);
+    const error = new Error(`Could not find place: ${query}`);
+    if (response.data.status === 'ZERO_RESULTS') {
+      error.code = 'ZERO_RESULTS';
+    }
+    throw error;
   }
 
   // Log top candidates (limit to 5)
@@ -224,6 +263,16 @@ async function findPlaceByTextSearch(query, options = {}) {
     console.log(`    Types: ${place.types?.join(', ') || 'N/A'}`);
   });
 
+  indexPlaces(response.data.results.map((result) => ({
+    lat: result.geometry.location.lat,
+    lng: result.geometry.location.lng,
+    formattedAddress: result.formatted_address,
+    placeId: result.place_id,
+    name: result.name,
+    rating: result.rating,
+    types: result.types
+  })));
+
   const place = response.data.results[0];
   console.log(`\n✅ Using top result: ${place.name} - ${place.formatted_address}`);
   console.log('=== END PLACES API ===\n');
@@ -253,6 +302,26 @@ export async function findNearestPlaces(keyword, location, limit = 5) {
     throw new Error('User location is required to find nearest places');
   }
 
+  const key = `${keyword}|${locationKey(location)}|${limit}`;
+  const fetchNearest = () => inFlightRequests.nearbySearch.run(key, () => requestNearestPlaces(keyword, location, limit));
+
+  const indexed = findIndexedNearestPlaces(keyword, location, limit);
+  if (indexed) {
+    console.log(`📇 Nearest "${keyword}" answered from place index${indexed.stale ? ' (stale, refreshing)' : ''}`);
+    if (indexed.stale) {
+      // Serve the stale answer now; the refresh re-records coverage for the next caller.
+      settle(runInBackground(fetchNearest));
+    }
+    return indexed.places.map((place, idx) => ({
+      ...place,
+      source: `Nearby Search (#${idx + 1}, ${place.distance.toFixed(1)}km away, cached)`
+    }));
+  }
+
+  return fetchNearest();
+}
+
+async function requestNearestPlaces(keyword, location, limit) {
   const params = {
     keyword: keyword,
     location: `${location.lat},${location.lng}`,
@@ -264,7 +333,7 @@ export async function findNearestPlaces(keyword, location, limit = 5) {
   console.log('Keyword:', keyword);
   console.log('Location:', `${location.lat}, ${location.lng}`);
 
-  const response = await mapsClient.placesNearby({ params });
+  const response = await scheduleOutbound('places', () => mapsClient.placesNearby({ params }));
 
   const results = response.data.results || [];
   console.log(`📊 Nearby Search Response: Found ${results.length} results`);
@@ -275,8 +344,20 @@ export async function findNearestPlaces(keyword, location, limit = 5) {
     throw new Error(`No nearby places found for: ${keyword}`);
   }
 
+  const indexedResults = results.map((place) => ({
+    lat: place.geometry.location.lat,
+    lng: place.geometry.location.lng,
+    formattedAddress: place.vicinity || place.name,
+    placeId: place.place_id,
+    name: place.name,
+    rating: place.rating,
+    types: place.types
+  }));
+  indexPlaces(indexedResults, keyword);
+  recordNearbyCoverage(keyword, location, indexedResults);
+
   const candidates = results.slice(0, limit).map((place, idx) => {
-    const dist = calculateDistance(
+    const dist = calculateDistanceKm(
       location.lat, location.lng,
       place.geometry.location.lat, place.geometry.location.lng
     );
@@ -309,6 +390,11 @@ export async function findNearestPlaces(keyword, location, limit = 5) {
  * @returns {Promise<Object>} - Geocoded location
  */
 async function geocodeFallback(query, options = {}) {
+  const key = `${query}|${locationKey(options.locationBias)}|${options.components || ''}`;
+  return inFlightRequests.geocode.run(key, () => requestGeocode(query, options));
+}
+
+async function requestGeocode(query, options) {
   const params = {
     address: query,
     key: process.env.GOOGLE_MAPS_API_KEY,
@@ -332,13 +418,17 @@ async function geocodeFallback(query, options = {}) {
   console.log('Query:', query);
   console.log('Params:', JSON.stringify(params, null, 2));
 
-  const response = await mapsClient.geocode({ params });
+  const response = await scheduleOutbound('geocoding', () => mapsClient.geocode({ params }));
 
-  console.log(`\n📊 Geocoding API Response: Found ${response.data.results.length} results`);
+  console.log(`\n📊 Geocoding API Response: Found ${response.data.results?.length || 0} results`);
 
-  if (response.data.results.length === 0) {
-    console.log('❌ No results found');
-    throw new Error(`Could not geocode location: ${query}`);
+  if (!response.data.results || response.data.results.length === 0) {
+    console.log(`❌ No results found (status: ${response.data.status})`);
+    const error = new Error(`Could not geocode location: ${query}`);
+    if (response.data.status === 'ZERO_RESULTS') {
+      error.code = 'ZERO_RESULTS';
+    }
+    throw error;
   }
 
   // Log all results
@@ -425,6 +515,94 @@ function getSettledValue(result) {
   return result.status === 'fulfilled' ? result.value : null;
 }
 
+// Stops Gemini is at least this sure about may skip the cross-check against the second API.
+const HEDGE_CONFIDENCE_THRESHOLD = Number(process.env.GEOCODE_HEDGE_CONFIDENCE || 0.9);
+
+/**
+ * Like Promise.allSettled, but returns as soon as a source passes its acceptEarly check.
+ * Sources still pending at that point come back as { status: 'skipped' } and are ignored
+ * (their requests finish in the background and still warm the caches).
+ * @param {Array<Promise>} promises - Lookups to run in parallel
+ * @param {Array<Function|null>} acceptEarly - Per source: (value) => true to stop waiting
+ * @returns {Promise<Array<Object>>} - Settled results in input order
+ */
+async function settleWithEarlyReturn(promises, acceptEarly) {
+  const results = promises.map(() => ({ status: 'skipped' }));
+  const pending = new Map(promises.map((promise, index) => [
+    index,
+    settle(promise).then((settled) => ({ index, settled }))
+  ]));
+
+  while (pending.size > 0) {
+    const { index, settled } = await Promise.race(pending.values());
+    pending.delete(index);
+    results[index] = settled;
+
+    if (settled.status === 'fulfilled' && acceptEarly[index]?.(settled.value)) {
+      break;
+    }
+  }
+
+  return results;
+}
+
+// Results returned before the second API answered. They skipped the cross-check that
+// depends on the stop's confidence and spoken text, neither of which is in the cache key,
+// so geocodeLocation does not cache them.
+const earlyReturnResults = new WeakSet();
+
+function markEarlyReturn(result) {
+  earlyReturnResults.add(result);
+  return result;
+}
+
+function matchesSpokenText(stopInfo, result) {
+  return [result.name, result.formattedAddress]
+    .filter(Boolean)
+    .some((text) => !checkAddressTextMismatch(stopInfo.original, text).hasMismatch);
+}
+
+/**
+ * A single-source result is trusted without waiting for the other API when the stop
+ * was high-confidence, the result is near the expected area and it matches what was said.
+ */
+function isConfidentResult(result, stopInfo) {
+  return Boolean(result) &&
+    !result.distanceWarning &&
+    typeof stopInfo?.confidence === 'number' &&
+    stopInfo.confidence >= HEDGE_CONFIDENCE_THRESHOLD &&
+    Boolean(stopInfo.original) &&
+    matchesSpokenText(stopInfo, result);
+}
+
+function isConfidentGeocodeResult(geocoded, stopInfo) {
+  if (!isConfidentResult(geocoded, stopInfo)) return false;
+  const [first, ...rest] = geocoded.allResults || [];
+  return rest.every((r) => isWithinDistance(first.lat, first.lng, r.lat, r.lng, 1000));
+}
+
+/**
+ * True when a settled lookup came back empty (as opposed to a network/quota failure).
+ * Address Validation resolves to null when it has no geocode for the query and throws
+ * on HTTP errors; the Maps APIs are tagged only when their status is ZERO_RESULTS.
+ */
+function isZeroResultsOutcome(result) {
+  if (result.status === 'fulfilled') return result.value === null;
+  return result.reason?.code === 'ZERO_RESULTS';
+}
+
+/**
+ * Build the "all APIs failed" error, tagged ZERO_RESULTS when every API found nothing
+ * so geocodeLocation can negative-cache it.
+ */
+function buildNoResultsError(message, settledResults) {
+  const error = new Error(message);
+  if (settledResults.every(isZeroResultsOutcome)) {
+    error.code = 'ZERO_RESULTS';
+  }
+  return error;
+}
+
 /**
  * Attach structured metadata from Gemini to geocoding results.
  */
@@ -444,7 +622,7 @@ function enrichWithStructuredMetadata(result, stopInfo, isStructured) {
 function applyDistanceWarning(result, nearLocation, label) {
   if (!result || !nearLocation) return result;
 
-  const distance = calculateDistance(
+  const distance = calculateDistanceKm(
     result.lat,
     result.lng,
     nearLocation.lat,
@@ -599,23 +777,31 @@ function buildHybridAlternatives(geocoded, places) {
 }
 
 async function resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, isStructured, context) {
-  const [placesResult, geocodingResult] = await Promise.allSettled([
-    findPlaceByTextSearch(query, geocodingOptions),
-    geocodeFallback(query, geocodingOptions)
-  ]);
+  const useDistanceGuard = shouldApplyDistanceGuard(stopInfo);
+  const guard = (label) => (value) => (
+    useDistanceGuard ? applyDistanceWarning(value, context.nearLocation, label) : value
+  );
 
-  let places = getSettledValue(placesResult);
-  let geocoded = getSettledValue(geocodingResult);
+  // A confident Places hit is returned without waiting for Geocoding.
+  const [placesResult, geocodingResult] = await settleWithEarlyReturn([
+    findPlaceByTextSearch(query, geocodingOptions).then(guard('Places result')),
+    geocodeFallback(query, geocodingOptions).then(guard('Geocoding result'))
+  ], [
+    (value) => isConfidentResult(value, stopInfo),
+    null
+  ]);
 
-  const useDistanceGuard = shouldApplyDistanceGuard(stopInfo);
-  places = useDistanceGuard ? applyDistanceWarning(places, context.nearLocation, 'Places result') : places;
-  geocoded = useDistanceGuard ? applyDistanceWarning(geocoded, context.nearLocation, 'Geocoding result') : geocoded;
+  const places = getSettledValue(placesResult);
+  const geocoded = getSettledValue(geocodingResult);
+  if (geocodingResult.status === 'skipped') {
+    console.log('⚡ Places result is confident and matches the spoken text - not waiting for Geocoding');
+  }
 
   if (places) {
     console.log(`✅ Places API found: ${places.name} at ${places.formattedAddress}`);
 
     if (geocoded) {
-      const distance = calculateDistance(places.lat, places.lng, geocoded.lat, geocoded.lng);
+      const distance = calculateDistanceKm(places.lat, places.lng, geocoded.lat, geocoded.lng);
       if (distance > 1) {
         const reason = `Places and Geocoding differ by ${distance.toFixed(2)}km`;
         console.log(`⚠️ ${reason} - requiring confirmation`);
@@ -645,6 +831,9 @@ async function resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, i
     }
 
     const finalResult = enrichWithStructuredMetadata(places, stopInfo, isStructured);
+    if (geocodingResult.status === 'skipped') {
+      markEarlyReturn(finalResult);
+    }
     console.log('\n✅ GEOCODING FINAL RESULT:');
     console.log(`   Name: ${finalResult.name}`);
     console.log(`   Address: ${finalResult.formattedAddress}`);
@@ -658,7 +847,7 @@ async function resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, i
     if ((geocoded.allResults?.length || 0) > 1) {
       const first = geocoded.allResults[0];
       const maxSpread = geocoded.allResults.slice(1).reduce((max, r) => {
-        const d = calculateDistance(first.lat, first.lng, r.lat, r.lng);
+        const d = calculateDistanceKm(first.lat, first.lng, r.lat, r.lng);
         return Math.max(max, d);
       }, 0);
       hasMultipleGeocodingCandidates = maxSpread > 1;
@@ -686,7 +875,7 @@ async function resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, i
     return enrichWithStructuredMetadata(geocoded, stopInfo, isStructured);
   }
 
-  throw new Error(`Both Places and Geocoding APIs failed for: "${query}"`);
+  throw buildNoResultsError(`Both Places and Geocoding APIs failed for: "${query}"`, [placesResult, geocodingResult]);
 }
 
 async function resolveAddressStrategy(query, geocodingOptions, stopInfo, isStructured, context) {
@@ -711,7 +900,7 @@ async function resolveAddressStrategy(query, geocodingOptions, stopInfo, isStruc
   if ((geocoded?.allResults?.length || 0) > 1) {
     const first = geocoded.allResults[0];
     const maxSpread = geocoded.allResults.slice(1).reduce((max, r) => {
-      const d = calculateDistance(first.lat, first.lng, r.lat, r.lng);
+      const d = calculateDistanceKm(first.lat, first.lng, r.lat, r.lng);
       return Math.max(max, d);
     }, 0);
     // Only flag if candidates are more than 1km apart
@@ -726,7 +915,7 @@ async function resolveAddressStrategy(query, geocodingOptions, stopInfo, isStruc
   let apiDistance = 0;
 
   if (validated && geocoded) {
-    apiDistance = calculateDistance(validated.lat, validated.lng, geocoded.lat, geocoded.lng);
+    apiDistance = calculateDistanceKm(validated.lat, validated.lng, geocoded.lat, geocoded.lng);
     hasApiDisagreement = apiDistance > 1;
     console.log(`Address strategy comparison distance: ${apiDistance.toFixed(2)}km`);
 
@@ -773,7 +962,7 @@ async function resolveAddressStrategy(query, geocodingOptions, stopInfo, isStruc
   }
 
   if (validated && geocoded) {
-    const distance = calculateDistance(validated.lat, validated.lng, geocoded.lat, geocoded.lng);
+    const distance = calculateDistanceKm(validated.lat, validated.lng, geocoded.lat, geocoded.lng);
     console.log(`Both APIs succeeded. Distance between results: ${distance.toFixed(2)}km`);
     console.log('Results are similar - using Address Validation API');
     return enrichWithStructuredMetadata(validated, stopInfo, isStructured);
@@ -789,27 +978,38 @@ async function resolveAddressStrategy(query, geocodingOptions, stopInfo, isStruc
     return enrichWithStructuredMetadata(geocoded, stopInfo, isStructured);
   }
 
-  throw new Error(`Both geocoding APIs failed for: "${query}"`);
+  throw buildNoResultsError(`Both geocoding APIs failed for: "${query}"`, [validationResult, geocodingResult]);
 }
 
 async function resolveHybridStrategy(query, geocodingOptions, stopInfo, isStructured, context) {
-  const [geocodingResult, placesResult] = await Promise.allSettled([
-    geocodeFallback(query, geocodingOptions),
-    findPlaceByTextSearch(query, geocodingOptions)
-  ]);
+  const useDistanceGuard = shouldApplyDistanceGuard(stopInfo);
+  const guard = (label) => (value) => (
+    useDistanceGuard ? applyDistanceWarning(value, context.nearLocation, label) : value
+  );
 
-  let geocoded = getSettledValue(geocodingResult);
-  let places = getSettledValue(placesResult);
+  // Whichever source comes back first confident ends the wait; the disagreement
+  // checks below then only run for low-confidence stops.
+  const [geocodingResult, placesResult] = await settleWithEarlyReturn([
+    geocodeFallback(query, geocodingOptions).then(guard('Geocoding result')),
+    findPlaceByTextSearch(query, geocodingOptions).then(guard('Places result'))
+  ], [
+    (value) => isConfidentGeocodeResult(value, stopInfo),
+    (value) => isConfidentResult(value, stopInfo)
+  ]);
 
-  const useDistanceGuard = shouldApplyDistanceGuard(stopInfo);
-  geocoded = useDistanceGuard ? applyDistanceWarning(geocoded, context.nearLocation, 'Geocoding result') : geocoded;
-  places = useDistanceGuard ? applyDistanceWarning(places, context.nearLocation, 'Places result') : places;
+  const geocoded = getSettledValue(geocodingResult);
+  const places = getSettledValue(placesResult);
+  const returnedEarly = geocodingResult.status === 'skipped' || placesResult.status === 'skipped';
+  if (returnedEarly) {
+    const confidentSource = geocoded ? 'Geocoding' : 'Places';
+    console.log(`⚡ ${confidentSource} result is confident and matches the spoken text - not waiting for the other API`);
+  }
 
   let hasMultipleGeocodingCandidates = false;
   if ((geocoded?.allResults?.length || 0) > 1) {
     const first = geocoded.allResults[0];
     const maxSpread = geocoded.allResults.slice(1).reduce((max, r) => {
-      const d = calculateDistance(first.lat, first.lng, r.lat, r.lng);
+      const d = calculateDistanceKm(first.lat, first.lng, r.lat, r.lng);
       return Math.max(max, d);
     }, 0);
     hasMultipleGeocodingCandidates = maxSpread > 1;
@@ -823,7 +1023,7 @@ async function resolveHybridStrategy(query, geocodingOptions, stopInfo, isStruct
   let apiDistance = 0;
 
   if (geocoded && places) {
-    apiDistance = calculateDistance(geocoded.lat, geocoded.lng, places.lat, places.lng);
+    apiDistance = calculateDistanceKm(geocoded.lat, geocoded.lng, places.lat, places.lng);
     hasApiDisagreement = apiDistance > 1;
     console.log(`Hybrid strategy comparison distance: ${apiDistance.toFixed(2)}km`);
 
@@ -861,15 +1061,13 @@ async function resolveHybridStrategy(query, geocodingOptions, stopInfo, isStruct
     }, stopInfo, isStructured);
   }
 
-  if (geocoded) {
-    return enrichWithStructuredMetadata(geocoded, stopInfo, isStructured);
-  }
-
-  if (places) {
-    return enrichWithStructuredMetadata(places, stopInfo, isStructured);
+  const finalResult = geocoded || places;
+  if (finalResult) {
+    const enriched = enrichWithStructuredMetadata(finalResult, stopInfo, isStructured);
+    return returnedEarly ? markEarlyReturn(enriched) : enriched;
   }
 
-  throw new Error(`Both Geocoding and Places APIs failed for: "${query}"`);
+  throw buildNoResultsError(`Both Geocoding and Places APIs failed for: "${query}"`, [geocodingResult, placesResult]);
 }
 
 /**
@@ -904,15 +1102,55 @@ export async function geocodeLocation(stopInfo, context = {}) {
   console.log('=======================================');
 
   const strategy = determineGeocodingStrategy(stopInfo);
+  const useDistanceGuard = shouldApplyDistanceGuard(stopInfo);
+  const cacheKey = buildGeocodeCacheKey(
+    query,
+    strategy,
+    context.nearLocation,
+    useDistanceGuard
+  );
+  let cached = getCachedGeocode(cacheKey);
+
+  // Cached results carry no distance warning. If this caller is far enough from the cached
+  // location that a fresh lookup would ask for confirmation, resolve it fresh instead.
+  if (cached && !cached.negative && useDistanceGuard &&
+    applyDistanceWarning(cached.result, context.nearLocation, 'Cached result')?.distanceWarning) {
+    console.log(`💾 Cached geocode for "${query}" is far from this caller's location - resolving fresh`);
+    cached = null;
+  }
 
   try {
+    if (cached?.negative) {
+      console.log(`💾 Geocode cache hit (ZERO_RESULTS) for "${query}"`);
+      const error = new Error(cached.errorMessage);
+      error.code = 'ZERO_RESULTS';
+      throw error;
+    }
+
     let result;
-    if (strategy === 'places_primary') {
-      result = await resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, isStructured, context);
-    } else if (strategy === 'address') {
-      result = await resolveAddressStrategy(query, geocodingOptions, stopInfo, isStructured, context);
+    if (cached) {
+      console.log(`💾 Geocode cache hit for "${query}" (${strategy})`);
+      result = enrichWithStructuredMetadata(cached.result, stopInfo, isStructured);
     } else {
-      result = await resolveHybridStrategy(query, geocodingOptions, stopInfo, isStructured, context);
+      if (strategy === 'places_primary') {
+        result = await resolvePlacesPrimaryStrategy(query, geocodingOptions, stopInfo, isStructured, context);
+      } else if (strategy === 'address') {
+        result = await resolveAddressStrategy(query, geocodingOptions, stopInfo, isStructured, context);
+      } else {
+        result = await resolveHybridStrategy(query, geocodingOptions, stopInfo, isStructured, context);
+      }
+
+      // Cache without the per-stop Gemini metadata; it is re-attached on every hit.
+      // Early returns are only valid for confident stops, and confirmation flags, reasons
+      // and alternatives were computed against this caller's exact nearLocation.
+      if (earlyReturnResults.has(result)) {
+        console.log(`Not caching early-returned result for "${query}" (depends on stop confidence)`);
+      } else if (result.needsConfirmation) {
+        console.log(`Not caching result that needs confirmation for "${query}"`);
+      } else {
+        const { type, confidence, original, ...cacheableResult } = result;
+        setCachedGeocode(cacheKey, cacheableResult);
+      }
     }
 
     // Text mismatch check: compare original input against geocoded result
@@ -942,30 +1180,23 @@ export async function geocodeLocation(stopInfo, context = {}) {
 
     return result;
   } catch (error) {
+    if (!cached && error.code === 'ZERO_RESULTS') {
+      setNegativeGeocode(cacheKey, error.message);
+    }
     console.error('Geocoding error for query:', query, error);
     throw error;
   }
 }
 
-/**
- * Calculate distance between two coordinates in kilometers using Haversine formula
- */
-function calculateDistance(lat1, lng1, lat2, lng2) {
-  const R = 6371; // Earth's radius in km
-  const dLat = (lat2 - lat1) * Math.PI / 180;
-  const dLng = (lng2 - lng1) * Math.PI / 180;
-  const a =
-    Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-    Math.cos(lat1 * Math.PI / 180) * Math.cos(lat2 * Math.PI / 180) *
-    Math.sin(dLng / 2) * Math.sin(dLng / 2);
-  const c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-  return R * c;
-}
-
 /**
  * Get route via the legacy Directions API
  */
 async function getRouteViaDirectionsApi(origin, destination, waypoints) {
+  const key = JSON.stringify([origin, destination, waypoints]);
+  return inFlightRequests.directions.run(key, () => requestDirections(origin, destination, waypoints));
+}
+
+async function requestDirections(origin, destination, waypoints) {
   const directionsParams = {
     origin,
     destination,
@@ -979,9 +1210,9 @@ async function getRouteViaDirectionsApi(origin, destination, waypoints) {
 
   console.log('Directions API params:', JSON.stringify(directionsParams, null, 2));
 
-  const response = await mapsClient.directions({
+  const response = await scheduleOutbound('directions', () => mapsClient.directions({
     params: directionsParams
-  });
+  }));
 
   if (response.data.routes.length === 0) {
     throw new Error('No route found');
@@ -1028,21 +1259,6 @@ function normalizeDirectionsResponse(data) {
   };
 }
 
-/**
- * Compute the initial bearing (compass heading 0-360°) from point 1 to point 2.
- * Used to tell the Routes API which direction of traffic flow to snap to
- * at via waypoints (e.g., eastbound vs westbound on a bridge).
- */
-function computeBearing(lat1, lng1, lat2, lng2) {
-  const toRad = (deg) => deg * Math.PI / 180;
-  const toDeg = (rad) => rad * 180 / Math.PI;
-  const φ1 = toRad(lat1), φ2 = toRad(lat2);
-  const Δλ = toRad(lng2 - lng1);
-  const y = Math.sin(Δλ) * Math.cos(φ2);
-  const x = Math.cos(φ1) * Math.sin(φ2) - Math.sin(φ1) * Math.cos(φ2) * Math.cos(Δλ);
-  return (toDeg(Math.atan2(y, x)) + 360) % 360;
-}
-
 /**
  * Get route via the newer Routes API (routes.googleapis.com)
  * Uses already-geocoded lat/lng so no double-geocoding occurs.
@@ -1072,7 +1288,7 @@ async function getRouteViaRoutesApi(geocodedStops) {
         // of traffic flow to snap to (e.g., eastbound vs westbound on a bridge).
         const origin = geocodedStops[0];
         const dest = geocodedStops[geocodedStops.length - 1];
-        const heading = Math.round(computeBearing(origin.lat, origin.lng, dest.lat, dest.lng));
+        const heading = Math.round(initialBearing(origin.lat, origin.lng, dest.lat, dest.lng));
         const wp = {
           location: {
             latLng: { latitude: stop.lat, longitude: stop.lng },
@@ -1105,7 +1321,7 @@ async function getRouteViaRoutesApi(geocodedStops) {
     'routes.localizedValues'
   ].join(',');
 
-  const response = await fetch(
+  const response = await scheduleOutbound('routes', () => fetch(
     'https://routes.googleapis.com/directions/v2:computeRoutes',
     {
       method: 'POST',
@@ -1116,7 +1332,7 @@ async function getRouteViaRoutesApi(geocodedStops) {
       },
       body: JSON.stringify(body)
     }
-  );
+  ));
 
   if (!response.ok) {
     const errorText = await response.text();
@@ -1258,12 +1474,158 @@ function normalizeStopForConfirmation(stop) {
   };
 }
 
+function hasCoordinates(stop) {
+  return typeof stop === 'object' && stop !== null && stop.lat !== undefined && stop.lng !== undefined;
+}
+
+/**
+ * Wrap a promise so it always resolves to a Promise.allSettled-style record.
+ * Speculative geocodes may never be awaited, so they must not reject unhandled.
+ */
+function settle(promise) {
+  return promise.then(
+    (value) => ({ status: 'fulfilled', value }),
+    (reason) => ({ status: 'rejected', reason })
+  );
+}
+
+// A speculative result is kept when the bias it used is within this distance
+// of the bias a sequential walk would have used (same threshold as API agreement).
+const SPECULATIVE_BIAS_TOLERANCE_KM = 1;
+
+/**
+ * Start geocoding every stop that lacks coordinates.
+ *
+ * When the route context supplies a fixed bias (route midpoint for add_stop, or the
+ * user's location) stops are independent and are all geocoded at once.
+ *
+ * Otherwise each stop is biased towards the previous stop. A stop that follows a stop
+ * with known coordinates gets its exact bias immediately. For a run of unresolved stops,
+ * each one is geocoded twice in parallel: once biased only by the last known anchor
+ * (used as the speculative bias for the next stop), and once biased by the previous
+ * stop's speculative result. resolveScheduledGeocode() reconciles the two.
+ *
+ * @returns {Array<Object|null>} - Per-stop task, null for stops that already have coordinates
+ */
+function scheduleStopGeocodes(stops, routeContext) {
+  const tasks = new Array(stops.length).fill(null);
+
+  // Priority 1: route context (for add_stop commands - most specific)
+  // Priority 2: user's current location (from browser geolocation)
+  const fixedBias = routeContext?.routeMidpoint || routeContext?.userLocation || null;
+  if (fixedBias) {
+    const label = routeContext?.routeMidpoint ? 'route midpoint' : 'user location';
+    console.log(`Using ${label} as location bias for all stops: ${fixedBias.lat}, ${fixedBias.lng}`);
+    stops.forEach((stop, index) => {
+      if (hasCoordinates(stop)) return;
+      tasks[index] = { exact: settle(geocodeLocation(stop, { nearLocation: fixedBias })) };
+    });
+    return tasks;
+  }
+
+  // Priority 3: previous stop location. Priority 4: no bias.
+  let anchor = null;
+  let previousTask = null;
+
+  stops.forEach((stop, index) => {
+    if (hasCoordinates(stop)) {
+      anchor = { lat: stop.lat, lng: stop.lng };
+      previousTask = null;
+      return;
+    }
+
+    const anchorContext = anchor ? { nearLocation: anchor } : {};
+
+    if (!previousTask) {
+      if (anchor) {
+        console.log(`Using previous stop as location bias: ${anchor.lat}, ${anchor.lng}`);
+      } else {
+        console.log('No location bias available for first stop');
+      }
+      const exact = settle(geocodeLocation(stop, anchorContext));
+      tasks[index] = { exact };
+      previousTask = { anchored: exact };
+      return;
+    }
+
+    const speculativeBias = previousTask.anchored.then((settled) => (
+      settled.status === 'fulfilled'
+        ? { lat: settled.value.lat, lng: settled.value.lng }
+        : null
+    ));
+    // The speculative guess is the one resolveScheduledGeocode usually returns, so it stays
+    // in the caller's lane. The anchored guess only seeds the next stop's bias and runs in
+    // the background lane so other users' interactive calls go first.
+    const speculative = speculativeBias.then((bias) => (
+      settle(geocodeLocation(stop, bias ? { nearLocation: bias } : anchorContext))
+    ));
+    const anchored = settle(runInBackground(() => geocodeLocation(stop, anchorContext)));
+
+    tasks[index] = { speculative, speculativeBias };
+    previousTask = { anchored };
+  });
+
+  const scheduled = tasks.filter(Boolean).length;
+  if (scheduled > 1) {
+    console.log(`⚡ Scheduled ${scheduled} stop geocodes in parallel`);
+  }
+
+  return tasks;
+}
+
+/**
+ * Pick the geocode a sequential walk would have produced for this stop.
+ * Falls back to a fresh geocode when the speculative bias turned out to be wrong.
+ */
+async function resolveScheduledGeocode(stop, task, previousLocation) {
+  if (task.exact) {
+    return task.exact;
+  }
+
+  const speculativeBias = await task.speculativeBias;
+  if (speculativeBias && previousLocation) {
+    const biasDrift = calculateDistanceKm(
+      speculativeBias.lat,
+      speculativeBias.lng,
+      previousLocation.lat,
+      previousLocation.lng
+    );
+    if (biasDrift <= SPECULATIVE_BIAS_TOLERANCE_KM) {
+      return task.speculative;
+    }
+    console.log(`Speculative bias was ${biasDrift.toFixed(2)}km off - re-geocoding with previous stop as bias`);
+  }
+
+  const context = previousLocation ? { nearLocation: previousLocation } : {};
+  return settle(geocodeLocation(stop, context));
+}
+
+/**
+ * Geocode stops ahead of a route request, in the background lane, only to warm the geocode cache.
+ * Uses the same biasing as getMultiStopRoute so the later lookups hit the same cache keys.
+ * @param {Array<Object>} stops - Structured stops in route order
+ * @param {Object} routeContext - Same location bias context getMultiStopRoute will get
+ * @returns {Promise<number>} - Number of stops that geocoded successfully
+ */
+export async function prefetchStopGeocodes(stops, routeContext = null) {
+  const tasks = runInBackground(() => scheduleStopGeocodes(stops, routeContext));
+  const settledResults = await Promise.all(
+    tasks.filter(Boolean).map((task) => task.exact || task.speculative)
+  );
+  return settledResults.filter((settled) => settled.status === 'fulfilled').length;
+}
+
 /**
  * Get directions for a multi-stop route
  * @param {Array} stops - Array of structured stop objects or location strings
+ * @param {Object} routeContext - Optional location bias context (routeMidpoint, userLocation)
+ * @param {Object} options - Optional hooks
+ * @param {Function} options.onStopGeocoded - Called with (index, stop) as each stop resolves, in order
  * @returns {Promise<Object>} - Route data including polyline and directions
  */
-export async function getMultiStopRoute(stops, routeContext = null) {
+export async function getMultiStopRoute(stops, routeContext = null, options = {}) {
+  const { onStopGeocoded = null } = options;
+
   if (stops.length < 2) {
     throw new Error('At least 2 stops are required for a route');
   }
@@ -1272,47 +1634,31 @@ export async function getMultiStopRoute(stops, routeContext = null) {
   console.log(`Using routing API: ${routingApi}`);
 
   try {
-    // Geocode stops that don't already have coordinates
-    // Use previous stop's location as bias for better accuracy
+    // Geocode stops that don't already have coordinates.
+    // All upstream calls are started up front; results are consumed in stop order so
+    // confirmation and error handling behave exactly like a sequential walk.
+    const geocodeTasks = scheduleStopGeocodes(stops, routeContext);
     const geocodedStops = [];
     let previousLocation = null;
 
     for (let index = 0; index < stops.length; index += 1) {
       const stop = stops[index];
       // If stop already has lat/lng (from existing route), use it as-is
-      if (typeof stop === 'object' && stop.lat !== undefined && stop.lng !== undefined) {
+      if (hasCoordinates(stop)) {
         console.log(`Using existing geocoded location for: "${stop.name || stop.original}"`);
         const existingStop = normalizeStopForConfirmation(stop);
         existingStop.via = Boolean(stop.via);
         geocodedStops.push(existingStop);
+        onStopGeocoded?.(index, existingStop);
         previousLocation = { lat: existingStop.lat, lng: existingStop.lng };
         continue;
       }
 
-      // Build geocoding context with location bias
-      let context = {};
-
-      // Priority 1: Use route context (for add_stop commands - most specific)
-      if (routeContext?.routeMidpoint) {
-        context.nearLocation = routeContext.routeMidpoint;
-        console.log(`Using route midpoint as location bias: ${context.nearLocation.lat}, ${context.nearLocation.lng}`);
+      const settled = await resolveScheduledGeocode(stop, geocodeTasks[index], previousLocation);
+      if (settled.status === 'rejected') {
+        throw settled.reason;
       }
-      // Priority 2: Use user's current location (from browser geolocation)
-      else if (routeContext?.userLocation) {
-        context.nearLocation = routeContext.userLocation;
-        console.log(`Using user location as location bias: ${context.nearLocation.lat}, ${context.nearLocation.lng}`);
-      }
-      // Priority 3: Use previous stop location
-      else if (previousLocation) {
-        context.nearLocation = previousLocation;
-        console.log(`Using previous stop as location bias: ${context.nearLocation.lat}, ${context.nearLocation.lng}`);
-      }
-      // Priority 4: No bias
-      else {
-        console.log('No location bias available for first stop');
-      }
-
-      const result = await geocodeLocation(stop, context);
+      const result = settled.value;
 
       const geocodedStop = {
         name: typeof stop === 'string' ? stop : (stop.original || stop.searchQuery),
@@ -1352,6 +1698,7 @@ export async function getMultiStopRoute(stops, routeContext = null) {
       }
 
       geocodedStops.push(geocodedStop);
+      onStopGeocoded?.(index, geocodedStop);
       previousLocation = { lat: result.lat, lng: result.lng };
     }
 
@@ -1363,47 +1710,56 @@ export async function getMultiStopRoute(stops, routeContext = null) {
       console.warn('Low confidence locations:', lowConfidenceStops.map(s => s.original));
     }
 
-    // Get route data based on configured API
-    let normalized;
+    // Get route data based on configured API (reusing a cached result for the same stop list)
+    const routeCacheKey = buildRouteCacheKey(routingApi, geocodedStops);
+    let normalized = routeCacheKey ? getCachedRoute(routeCacheKey) : null;
 
-    if (routingApi === 'routes') {
-      const data = await getRouteViaRoutesApi(geocodedStops);
-      normalized = normalizeRoutesResponse(data, geocodedStops);
+    if (normalized) {
+      console.log('💾 Route cache hit - skipping routing API call');
     } else {
-      const getDirectionsQuery = (stopInfo) => {
-        if (typeof stopInfo === 'string') return stopInfo;
-        return stopInfo.searchQuery || stopInfo.original;
-      };
+      if (routingApi === 'routes') {
+        const data = await getRouteViaRoutesApi(geocodedStops);
+        normalized = normalizeRoutesResponse(data, geocodedStops);
+      } else {
+        const getDirectionsQuery = (stopInfo) => {
+          if (typeof stopInfo === 'string') return stopInfo;
+          return stopInfo.searchQuery || stopInfo.original;
+        };
 
-      const origin = geocodedStops[0]?.lat !== undefined && geocodedStops[0]?.lng !== undefined
-        ? { lat: geocodedStops[0].lat, lng: geocodedStops[0].lng }
-        : getDirectionsQuery(stops[0]);
-      const destination = geocodedStops[geocodedStops.length - 1]?.lat !== undefined &&
-        geocodedStops[geocodedStops.length - 1]?.lng !== undefined
-        ? {
-            lat: geocodedStops[geocodedStops.length - 1].lat,
-            lng: geocodedStops[geocodedStops.length - 1].lng
+        const origin = geocodedStops[0]?.lat !== undefined && geocodedStops[0]?.lng !== undefined
+          ? { lat: geocodedStops[0].lat, lng: geocodedStops[0].lng }
+          : getDirectionsQuery(stops[0]);
+        const destination = geocodedStops[geocodedStops.length - 1]?.lat !== undefined &&
+          geocodedStops[geocodedStops.length - 1]?.lng !== undefined
+          ? {
+              lat: geocodedStops[geocodedStops.length - 1].lat,
+              lng: geocodedStops[geocodedStops.length - 1].lng
+            }
+          : getDirectionsQuery(stops[stops.length - 1]);
+
+        const waypoints = stops.slice(1, -1).map((stop, i) => {
+          const geocoded = geocodedStops[i + 1];
+          if (geocoded?.via) {
+            // Prefer place_id for via waypoints — better road-snapping for bridges/tunnels
+            if (geocoded.placeId) {
+              return `via:place_id:${geocoded.placeId}`;
+            }
+            return `via:${getDirectionsQuery(stop)}`;
           }
-        : getDirectionsQuery(stops[stops.length - 1]);
-
-      const waypoints = stops.slice(1, -1).map((stop, i) => {
-        const geocoded = geocodedStops[i + 1];
-        if (geocoded?.via) {
-          // Prefer place_id for via waypoints — better road-snapping for bridges/tunnels
-          if (geocoded.placeId) {
-            return `via:place_id:${geocoded.placeId}`;
+
+          if (geocoded?.lat !== undefined && geocoded?.lng !== undefined) {
+            return { lat: geocoded.lat, lng: geocoded.lng };
           }
-          return `via:${getDirectionsQuery(stop)}`;
-        }
 
-        if (geocoded?.lat !== undefined && geocoded?.lng !== undefined) {
-          return { lat: geocoded.lat, lng: geocoded.lng };
-        }
+          return getDirectionsQuery(stop);
+        });
+        const data = await getRouteViaDirectionsApi(origin, destination, waypoints);
+        normalized = normalizeDirectionsResponse(data);
+      }
 
-        return getDirectionsQuery(stop);
-      });
-      const data = await getRouteViaDirectionsApi(origin, destination, waypoints);
-      normalized = normalizeDirectionsResponse(data);
+      if (routeCacheKey) {
+        setCachedRoute(routeCacheKey, normalized);
+      }
     }
 
     return {
@@ -1420,6 +1776,16 @@ export async function getMultiStopRoute(stops, routeContext = null) {
   }
 }
 
+/**
+ * Dedup counters for the single-flight layer in front of the Maps APIs.
+ * "deduplicated" counts calls that joined an identical request already in flight.
+ */
+export function getMapsSingleFlightStats() {
+  return Object.fromEntries(
+    Object.entries(inFlightRequests).map(([name, flight]) => [name, flight.getStats()])
+  );
+}
+
 /**
  * Format duration in seconds to human readable string
  */
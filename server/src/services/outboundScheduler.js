@@ -0,0 +1,263 @@
+import { AsyncLocalStorage } from 'async_hooks';
+
+/**
+ * Shared scheduler for outbound Google API calls.
+ * Each API has a token bucket (sustained rate + burst) and a concurrency cap.
+ * Calls wait in one of two lanes: "interactive" (the route a user is waiting on)
+ * drains before "background" (speculative geocodes, index refreshes).
+ * A quota response (OVER_QUERY_LIMIT / HTTP 429) pauses that API and puts the call
+ * back at the front of its lane instead of surfacing the error to the user.
+ * Work shared by several callers (see SingleFlight) runs in a lane group, which is
+ * promoted to the interactive lane as soon as an interactive caller joins it.
+ */
+
+const LANES = ['interactive', 'background'];
+
+function readBudget(name, defaults) {
+  const prefix = `OUTBOUND_${name.replace(/[A-Z]/g, (c) => `_${c}`).toUpperCase()}`;
+  return {
+    ratePerSecond: Number(process.env[`${prefix}_QPS`] || defaults.ratePerSecond),
+    burst: Number(process.env[`${prefix}_BURST`] || defaults.burst),
+    maxConcurrent: Number(process.env[`${prefix}_MAX_CONCURRENT`] || defaults.maxConcurrent)
+  };
+}
+
+const API_BUDGETS = {
+  places: readBudget('places', { ratePerSecond: 10, burst: 20, maxConcurrent: 8 }),
+  geocoding: readBudget('geocoding', { ratePerSecond: 25, burst: 50, maxConcurrent: 8 }),
+  addressValidation: readBudget('addressValidation', { ratePerSecond: 5, burst: 10, maxConcurrent: 4 }),
+  directions: readBudget('directions', { ratePerSecond: 10, burst: 20, maxConcurrent: 6 }),
+  routes: readBudget('routes', { ratePerSecond: 10, burst: 20, maxConcurrent: 6 }),
+  gemini: readBudget('gemini', { ratePerSecond: 2, burst: 5, maxConcurrent: 4 })
+};
+
+const MAX_QUOTA_RETRIES = Number(process.env.OUTBOUND_QUOTA_RETRIES || 3);
+const QUOTA_BACKOFF_MS = 1000;
+
+const priorityStorage = new AsyncLocalStorage();
+
+/**
+ * True when a thrown error or a returned response means "slow down".
+ * Covers the Maps client (axios), fetch Responses and Gemini ApiErrors.
+ */
+function isQuotaExceeded(outcome) {
+  if (!outcome) return false;
+  const status = outcome.response?.status ?? outcome.status;
+  const apiStatus = outcome.response?.data?.status ?? outcome.data?.status ?? outcome.code;
+  return status === 429 ||
+    apiStatus === 'OVER_QUERY_LIMIT' ||
+    apiStatus === 'RESOURCE_EXHAUSTED' ||
+    /RESOURCE_EXHAUSTED|OVER_QUERY_LIMIT/.test(outcome.message || '');
+}
+
+class ApiBudget {
+  constructor(name, { ratePerSecond, burst, maxConcurrent }) {
+    this.name = name;
+    this.ratePerSecond = ratePerSecond;
+    this.burst = burst;
+    this.maxConcurrent = maxConcurrent;
+    this.tokens = burst;
+    this.lastRefill = Date.now();
+    this.pausedUntil = 0;
+    this.active = 0;
+    this.timer = null;
+    this.queues = { interactive: [], background: [] };
+    this.stats = {
+      scheduled: 0,
+      completed: 0,
+      delayed: 0,
+      quotaRetries: 0,
+      quotaFailures: 0,
+      promoted: 0,
+      totalWaitMs: 0
+    };
+  }
+
+  enqueue(fn, lane, group = null) {
+    this.stats.scheduled += 1;
+    return new Promise((resolve, reject) => {
+      this.queues[lane].push({ fn, lane, group, resolve, reject, attempts: 0, enqueuedAt: Date.now() });
+      this.pump();
+    });
+  }
+
+  /**
+   * Move a group's queued background calls to the back of the interactive lane.
+   */
+  promote(group) {
+    const promoted = [];
+    this.queues.background = this.queues.background.filter((task) => {
+      if (task.group !== group) return true;
+      task.lane = 'interactive';
+      promoted.push(task);
+      return false;
+    });
+    if (promoted.length === 0) return;
+    this.queues.interactive.push(...promoted);
+    this.stats.promoted += promoted.length;
+    this.pump();
+  }
+
+  refill(now) {
+    const elapsedSeconds = (now - this.lastRefill) / 1000;
+    this.tokens = Math.min(this.burst, this.tokens + elapsedSeconds * this.ratePerSecond);
+    this.lastRefill = now;
+  }
+
+  nextTask() {
+    for (const lane of LANES) {
+      if (this.queues[lane].length > 0) return this.queues[lane].shift();
+    }
+    return null;
+  }
+
+  get queued() {
+    return LANES.reduce((sum, lane) => sum + this.queues[lane].length, 0);
+  }
+
+  pump() {
+    const now = Date.now();
+    this.refill(now);
+
+    while (this.active < this.maxConcurrent && this.queued > 0) {
+      if (now < this.pausedUntil || this.tokens < 1) {
+        this.scheduleWakeUp(now);
+        return;
+      }
+      this.tokens -= 1;
+      this.run(this.nextTask());
+    }
+  }
+
+  scheduleWakeUp(now) {
+    if (this.timer) return;
+    const tokenWaitMs = this.tokens >= 1 ? 0 : ((1 - this.tokens) / this.ratePerSecond) * 1000;
+    const waitMs = Math.max(this.pausedUntil - now, tokenWaitMs, 1);
+    this.timer = setTimeout(() => {
+      this.timer = null;
+      this.pump();
+    }, waitMs);
+  }
+
+  run(task) {
+    const waitMs = Date.now() - task.enqueuedAt;
+    this.stats.totalWaitMs += waitMs;
+    if (waitMs > 0) this.stats.delayed += 1;
+    this.active += 1;
+
+    Promise.resolve()
+      .then(task.fn)
+      .then(
+        (value) => this.settle(task, isQuotaExceeded(value), () => task.resolve(value)),
+        (error) => this.settle(task, isQuotaExceeded(error), () => task.reject(error))
+      );
+  }
+
+  settle(task, quotaExceeded, finish) {
+    this.active -= 1;
+
+    if (quotaExceeded && task.attempts < MAX_QUOTA_RETRIES) {
+      task.attempts += 1;
+      this.stats.quotaRetries += 1;
+      const backoffMs = QUOTA_BACKOFF_MS * 2 ** (task.attempts - 1);
+      this.pausedUntil = Math.max(this.pausedUntil, Date.now() + backoffMs);
+      this.tokens = 0;
+      console.warn(`⏳ ${this.name} quota exceeded - retrying in ${backoffMs}ms (attempt ${task.attempts}/${MAX_QUOTA_RETRIES})`);
+      this.queues[task.lane].unshift(task);
+    } else {
+      if (quotaExceeded) this.stats.quotaFailures += 1;
+      this.stats.completed += 1;
+      finish();
+    }
+
+    this.pump();
+  }
+
+  getStats() {
+    return {
+      ...this.stats,
+      active: this.active,
+      queuedInteractive: this.queues.interactive.length,
+      queuedBackground: this.queues.background.length,
+      ratePerSecond: this.ratePerSecond,
+      maxConcurrent: this.maxConcurrent,
+      avgWaitMs: this.stats.completed > 0 ? this.stats.totalWaitMs / this.stats.completed : 0
+    };
+  }
+}
+
+const budgets = Object.fromEntries(
+  Object.entries(API_BUDGETS).map(([name, config]) => [name, new ApiBudget(name, config)])
+);
+
+/**
+ * Run an outbound call within the API's rate budget.
+ * @param {string} api - places | geocoding | addressValidation | directions | routes | gemini
+ * @param {Function} fn - Performs the call and returns a promise
+ * @param {Object} options
+ * @param {string} options.priority - "interactive" or "background" (defaults to the current lane)
+ * @returns {Promise<*>} - Result of fn
+ */
+export function scheduleOutbound(api, fn, options = {}) {
+  const budget = budgets[api];
+  if (!budget) {
+    throw new Error(`Unknown outbound API: ${api}`);
+  }
+  const group = getLaneGroup();
+  const lane = options.priority || group?.lane || priorityStorage.getStore() || 'interactive';
+  return budget.enqueue(fn, lane, group);
+}
+
+function getLaneGroup() {
+  const store = priorityStorage.getStore();
+  return typeof store === 'object' ? store : null;
+}
+
+/**
+ * Lane of the current async context ("interactive" unless inside runInBackground).
+ */
+function getCurrentLane() {
+  const store = priorityStorage.getStore();
+  return (typeof store === 'object' ? store?.lane : store) || 'interactive';
+}
+
+/**
+ * Lane sharing for coalesced work: start() runs fn in a new group that begins in the
+ * starter's lane, and join() promotes that group when an interactive caller joins.
+ */
+export const outboundLaneSharing = {
+  start(fn) {
+    const group = { lane: getCurrentLane(), children: new Set() };
+    // Nested shared calls (e.g. a Places lookup inside a shared geocode) are promoted with their parent
+    getLaneGroup()?.children.add(group);
+    return { group, promise: priorityStorage.run(group, fn) };
+  },
+
+  join(group) {
+    if (getCurrentLane() === 'interactive') promoteLaneGroup(group);
+  }
+};
+
+function promoteLaneGroup(group) {
+  if (group.lane === 'interactive') return;
+  group.lane = 'interactive';
+  for (const budget of Object.values(budgets)) {
+    budget.promote(group);
+  }
+  for (const child of group.children) {
+    promoteLaneGroup(child);
+  }
+}
+
+/**
+ * Run fn with every outbound call it makes (at any depth) in the background lane.
+ */
+export function runInBackground(fn) {
+  return priorityStorage.run('background', fn);
+}
+
+export function getOutboundSchedulerStats() {
+  return Object.fromEntries(
+    Object.entries(budgets).map(([name, budget]) => [name, budget.getStats()])
+  );
+}
@@ -0,0 +1,100 @@
+import { LruCache } from '../utils/lruCache.js';
+
+/**
+ * In-memory cache of Place Details results keyed by place_id.
+ * Fields are grouped by how fast they go stale: name/location/address barely change,
+ * ratings drift slowly, opening hours (open_now) change within the hour. Each group
+ * has its own expiry, so a stale group is refetched on its own with a narrower
+ * field mask instead of re-requesting the whole place.
+ */
+
+const HOUR_MS = 60 * 60 * 1000;
+
+export const PLACE_DETAIL_FIELD_GROUPS = {
+  static: {
+    fields: ['place_id', 'name', 'geometry', 'formatted_address', 'types', 'website', 'formatted_phone_number', 'vicinity'],
+    ttlMs: Number(process.env.PLACE_DETAILS_STATIC_TTL_HOURS || 24 * 7) * HOUR_MS
+  },
+  reputation: {
+    fields: ['rating', 'user_ratings_total', 'reviews'],
+    ttlMs: Number(process.env.PLACE_DETAILS_RATINGS_TTL_HOURS || 24) * HOUR_MS
+  },
+  hours: {
+    fields: ['opening_hours'],
+    ttlMs: Number(process.env.PLACE_DETAILS_HOURS_TTL_MINUTES || 15) * 60 * 1000
+  }
+};
+
+const MAX_ENTRIES = Number(process.env.PLACE_DETAILS_CACHE_MAX_ENTRIES || 2000);
+
+const memoryCache = new LruCache(MAX_ENTRIES);
+
+const stats = {
+  hits: 0,
+  partialHits: 0,
+  misses: 0,
+  writes: 0
+};
+
+/**
+ * Look up a place.
+ * @param {string} placeId - Google Place ID
+ * @returns {{details: Object, staleGroups: Array<string>}} - Cached raw fields and the groups that need a refetch
+ */
+export function getCachedPlaceDetails(placeId) {
+  const entry = memoryCache.get(placeId);
+  const now = Date.now();
+  const staleGroups = Object.keys(PLACE_DETAIL_FIELD_GROUPS)
+    .filter((group) => !entry || !(entry.expiresAt[group] > now));
+
+  if (!entry) {
+    stats.misses += 1;
+  } else if (staleGroups.length > 0) {
+    stats.partialHits += 1;
+  } else {
+    stats.hits += 1;
+  }
+
+  return {
+    details: entry ? structuredClone(entry.details) : null,
+    staleGroups
+  };
+}
+
+/**
+ * Merge freshly fetched fields for the given groups into the cache.
+ * @param {string} placeId - Google Place ID
+ * @param {Object} result - Raw Place Details result for the requested fields
+ * @param {Array<string>} groups - Field groups the result covers
+ * @returns {Object} - Merged raw details for the place
+ */
+export function setCachedPlaceDetails(placeId, result, groups) {
+  const previous = memoryCache.get(placeId);
+  const now = Date.now();
+  const entry = {
+    details: { ...(previous?.details || {}) },
+    expiresAt: { ...(previous?.expiresAt || {}) }
+  };
+
+  for (const group of groups) {
+    for (const field of PLACE_DETAIL_FIELD_GROUPS[group].fields) {
+      entry.details[field] = result[field];
+    }
+    entry.expiresAt[group] = now + PLACE_DETAIL_FIELD_GROUPS[group].ttlMs;
+  }
+
+  // The entry lives as long as its static fields; faster groups just expire inside it.
+  const staticExpiresAt = entry.expiresAt.static || now;
+  memoryCache.set(placeId, entry, Math.max(staticExpiresAt - now, 0));
+  stats.writes += 1;
+  return structuredClone(entry.details);
+}
+
+export function getPlaceDetailsCacheStats() {
+  const lookups = stats.hits + stats.partialHits + stats.misses;
+  return {
+    ...stats,
+    memoryEntries: memoryCache.size,
+    hitRate: lookups > 0 ? stats.hits / lookups : 0
+  };
+}
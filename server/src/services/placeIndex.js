@@ -0,0 +1,215 @@
+import { calculateDistanceKm } from '../utils/geo.js';
+import { encodeGeohash, geohashesInRadius } from '../utils/geohash.js';
+
+/**
+ * In-process spatial index of places seen in Places API responses.
+ * Places are bucketed by geohash and tagged with the keywords they were found for
+ * (plus their own name, so "Starbucks" matches "Starbucks Coffee").
+ *
+ * A rank-by-distance Nearby Search also records a coverage circle: every place
+ * matching the keyword inside it is known. "Nearest X" can then be answered
+ * locally when the circle still contains the disk around the user that holds
+ * the requested number of places - no closer unknown place can exist.
+ */
+
+const GEOHASH_PRECISION = 5; // ~4.9km cells
+const MAX_PLACES = Number(process.env.PLACE_INDEX_MAX_PLACES || 20000);
+const MAX_COVERAGES_PER_KEYWORD = 50;
+const FRESH_MS = Number(process.env.PLACE_INDEX_FRESH_HOURS || 12) * 60 * 60 * 1000;
+const MAX_AGE_MS = Number(process.env.PLACE_INDEX_MAX_AGE_HOURS || 24 * 7) * 60 * 60 * 1000;
+
+// Nearby Search with rankby=distance returns at most 20 results per page and
+// only looks within 50km, so a shorter page means the whole 50km disk was covered.
+const NEARBY_PAGE_SIZE = 20;
+const NEARBY_MAX_RADIUS_KM = 50;
+
+const places = new Map(); // placeId -> indexed place (Map order = least recently seen first)
+const cells = new Map(); // geohash -> Set(placeId)
+const coverages = new Map(); // keyword -> [{ lat, lng, radiusKm, fetchedAt }]
+
+const stats = {
+  localHits: 0,
+  staleHits: 0,
+  misses: 0,
+  placesIndexed: 0,
+  placesDropped: 0,
+  coveragesRecorded: 0
+};
+
+/**
+ * Normalize a keyword or place name for tagging ("Whole Foods Market" -> "whole foods market").
+ */
+export function normalizeKeyword(text) {
+  return String(text || '')
+    .toLowerCase()
+    .replace(/[^\p{L}\p{N}]+/gu, ' ')
+    .trim();
+}
+
+function removePlace(placeId) {
+  const place = places.get(placeId);
+  if (!place) return;
+  places.delete(placeId);
+  const cell = cells.get(place.cell);
+  if (cell) {
+    cell.delete(placeId);
+    if (cell.size === 0) cells.delete(place.cell);
+  }
+}
+
+/**
+ * Add or refresh places from any Places API response.
+ * @param {Array<Object>} results - Places with lat/lng, placeId, name (our normalized shape)
+ * @param {string|null} keyword - Keyword the results were found for, if it describes all of them
+ */
+export function indexPlaces(results, keyword = null) {
+  const keywordTag = keyword ? normalizeKeyword(keyword) : null;
+
+  for (const result of results || []) {
+    if (!result?.placeId || !Number.isFinite(result.lat) || !Number.isFinite(result.lng)) continue;
+
+    const previous = places.get(result.placeId);
+    removePlace(result.placeId);
+
+    const keywords = new Set(previous?.keywords || []);
+    if (keywordTag) keywords.add(keywordTag);
+
+    const cell = encodeGeohash(result.lat, result.lng, GEOHASH_PRECISION);
+    places.set(result.placeId, {
+      placeId: result.placeId,
+      name: result.name,
+      nameTag: normalizeKeyword(result.name),
+      lat: result.lat,
+      lng: result.lng,
+      formattedAddress: result.formattedAddress,
+      rating: result.rating,
+      types: result.types,
+      keywords,
+      cell,
+      seenAt: Date.now()
+    });
+    if (!cells.has(cell)) cells.set(cell, new Set());
+    cells.get(cell).add(result.placeId);
+    stats.placesIndexed += 1;
+  }
+
+  while (places.size > MAX_PLACES) {
+    removePlace(places.keys().next().value);
+  }
+}
+
+/**
+ * Record that a rank-by-distance Nearby Search around center returned these places.
+ * @param {string} keyword - Search keyword
+ * @param {Object} center - Search location { lat, lng }
+ * @param {Array<Object>} results - All results from the search, sorted by distance
+ */
+export function recordNearbyCoverage(keyword, center, results) {
+  if (!results?.length) return;
+
+  const keywordTag = normalizeKeyword(keyword);
+  const radiusKm = results.length < NEARBY_PAGE_SIZE
+    ? NEARBY_MAX_RADIUS_KM
+    : calculateDistanceKm(center.lat, center.lng, results[results.length - 1].lat, results[results.length - 1].lng);
+
+  const list = (coverages.get(keywordTag) || []).filter((coverage) =>
+    Date.now() - coverage.fetchedAt < MAX_AGE_MS
+  );
+  // Anything we had for this keyword inside the new circle but Google no longer returns is gone.
+  const returnedIds = new Set(results.map((result) => result.placeId));
+  for (const cell of geohashesInRadius(center.lat, center.lng, radiusKm, GEOHASH_PRECISION)) {
+    for (const placeId of Array.from(cells.get(cell) || [])) {
+      const place = places.get(placeId);
+      if (returnedIds.has(placeId) || !matchesKeyword(place, keywordTag)) continue;
+      if (calculateDistanceKm(center.lat, center.lng, place.lat, place.lng) > radiusKm) continue;
+      removePlace(placeId);
+      stats.placesDropped += 1;
+    }
+  }
+
+  list.push({ lat: center.lat, lng: center.lng, radiusKm, fetchedAt: Date.now() });
+  while (list.length > MAX_COVERAGES_PER_KEYWORD) list.shift();
+  coverages.set(keywordTag, list);
+  stats.coveragesRecorded += 1;
+}
+
+function matchesKeyword(place, keywordTag) {
+  return place.keywords.has(keywordTag) || ` ${place.nameTag} `.includes(` ${keywordTag} `);
+}
+
+/**
+ * Answer "nearest <keyword>" from the index if a recorded search proves the answer complete.
+ * @param {string} keyword - Business name or place type
+ * @param {Object} location - User location { lat, lng }
+ * @param {number} limit - Number of places wanted
+ * @returns {{places: Array<Object>, stale: boolean}|null} - Places sorted by distance (km), or null to use the API
+ */
+export function findIndexedNearestPlaces(keyword, location, limit) {
+  const keywordTag = normalizeKeyword(keyword);
+  const now = Date.now();
+
+  // Pick the coverage circle that leaves the largest safe disk around the user.
+  let best = null;
+  for (const coverage of coverages.get(keywordTag) || []) {
+    const age = now - coverage.fetchedAt;
+    if (age >= MAX_AGE_MS) continue;
+    const safeRadiusKm = coverage.radiusKm - calculateDistanceKm(location.lat, location.lng, coverage.lat, coverage.lng);
+    if (safeRadiusKm > 0 && (!best || safeRadiusKm > best.safeRadiusKm)) {
+      best = { safeRadiusKm, stale: age >= FRESH_MS };
+    }
+  }
+
+  if (!best) {
+    stats.misses += 1;
+    return null;
+  }
+
+  const candidates = [];
+  for (const cell of geohashesInRadius(location.lat, location.lng, best.safeRadiusKm, GEOHASH_PRECISION)) {
+    for (const placeId of cells.get(cell) || []) {
+      const place = places.get(placeId);
+      if (!matchesKeyword(place, keywordTag)) continue;
+      const distance = calculateDistanceKm(location.lat, location.lng, place.lat, place.lng);
+      if (distance <= best.safeRadiusKm) {
+        candidates.push({ place, distance });
+      }
+    }
+  }
+
+  if (candidates.length < limit) {
+    stats.misses += 1;
+    return null;
+  }
+
+  candidates.sort((a, b) => a.distance - b.distance);
+  if (best.stale) {
+    stats.staleHits += 1;
+  } else {
+    stats.localHits += 1;
+  }
+
+  return {
+    stale: best.stale,
+    places: candidates.slice(0, limit).map(({ place, distance }) => ({
+      lat: place.lat,
+      lng: place.lng,
+      formattedAddress: place.formattedAddress,
+      placeId: place.placeId,
+      name: place.name,
+      rating: place.rating,
+      types: place.types,
+      distance
+    }))
+  };
+}
+
+export function getPlaceIndexStats() {
+  const lookups = stats.localHits + stats.staleHits + stats.misses;
+  return {
+    ...stats,
+    places: places.size,
+    cells: cells.size,
+    keywords: coverages.size,
+    hitRate: lookups > 0 ? (stats.localHits + stats.staleHits) / lookups : 0
+  };
+}
@@ -1,8 +1,39 @@
 import { Client } from '@googlemaps/google-maps-services-js';
-import { generateRoutePoints, distanceToRoute } from '../utils/routeUtils.js';
+import {
+  buildRouteGeometry,
+  getRouteStops,
+  pointAtDistance,
+  samplePointsAlongRoute
+} from '../utils/routeGeometry.js';
+import { RouteSegmentIndex } from '../utils/routeSegmentIndex.js';
+import { createConcurrencyLimiter } from '../utils/concurrencyLimiter.js';
+import { SingleFlight } from '../utils/singleFlight.js';
+import {
+  PLACE_DETAIL_FIELD_GROUPS,
+  getCachedPlaceDetails,
+  getPlaceDetailsCacheStats,
+  setCachedPlaceDetails
+} from './placeDetailsCache.js';
+import { indexPlaces } from './placeIndex.js';
+import { outboundLaneSharing, scheduleOutbound } from './outboundScheduler.js';
 
 const mapsClient = new Client({});
 
+// Upper bound on Place Details calls in flight across all requests.
+const placeDetailsRequests = new SingleFlight({ lanes: outboundLaneSharing });
+
+// Along-route search budget: Nearby Search calls per search, how many run at once, and how
+// many good in-corridor candidates are enough to stop issuing further queries.
+const ALONG_ROUTE_MAX_QUERIES = Number(process.env.ALONG_ROUTE_MAX_QUERIES || 16);
+const ALONG_ROUTE_CONCURRENCY = Number(process.env.ALONG_ROUTE_CONCURRENCY || 4);
+const ALONG_ROUTE_TARGET_RESULTS = Number(process.env.ALONG_ROUTE_TARGET_RESULTS || 20);
+const ALONG_ROUTE_GOOD_RATING = 4.0;
+
+// Nearby Search caps radius at 50km and returns at most 20 results per page,
+// so a full page means the area is denser than one query can show.
+const NEARBY_MAX_RADIUS_M = 50000;
+const NEARBY_PAGE_SIZE = 20;
+
 /**
  * Search for nearby coffee shops using Google Places API
  * @param {number} lat - Latitude
@@ -26,7 +57,7 @@ export async function findNearbyCoffeeShops(lat, lng, radius = 5000, keyword = '
       keyword
     });
 
-    const response = await mapsClient.placesNearby({
+    const response = await scheduleOutbound('places', () => mapsClient.placesNearby({
       params: {
         location: { lat, lng },
         radius,
@@ -34,7 +65,7 @@ export async function findNearbyCoffeeShops(lat, lng, radius = 5000, keyword = '
         keyword,
         key: apiKey
       }
-    });
+    }));
 
     console.log(`Google API Response Status: ${response.data.status}`);
     console.log(`Google API Error Message:`, response.data.error_message || 'None');
@@ -63,6 +94,7 @@ export async function findNearbyCoffeeShops(lat, lng, radius = 5000, keyword = '
 
     const validPlaces = detailedPlaces.filter(place => place !== null);
     console.log(`Successfully retrieved details for ${validPlaces.length} coffee shops`);
+    indexDetailedPlaces(validPlaces);
     console.log('=== End Coffee Shop Search Debug ===');
 
     return validPlaces;
@@ -106,7 +138,7 @@ export async function findNearbyFoodShops(lat, lng, radius = 5000) {
       keyword: 'food'
     });
 
-    const response = await mapsClient.placesNearby({
+    const response = await scheduleOutbound('places', () => mapsClient.placesNearby({
       params: {
         location: { lat, lng },
         radius,
@@ -114,7 +146,7 @@ export async function findNearbyFoodShops(lat, lng, radius = 5000) {
         keyword: 'food',
         key: apiKey
       }
-    });
+    }));
 
     console.log(`Google API Response Status: ${response.data.status}`);
     console.log('Google API Error Message:', response.data.error_message || 'None');
@@ -142,6 +174,7 @@ export async function findNearbyFoodShops(lat, lng, radius = 5000) {
 
     const validPlaces = detailedPlaces.filter(place => place !== null);
     console.log(`Successfully retrieved details for ${validPlaces.length} food places`);
+    indexDetailedPlaces(validPlaces);
     console.log('=== End Food Shop Search Debug ===');
 
     return validPlaces;
@@ -164,175 +197,303 @@ export async function findNearbyFoodShops(lat, lng, radius = 5000) {
 
 /**
  * Get detailed information about a place
+ * Served from the place-details cache when fresh; stale field groups are refetched
+ * through the outbound scheduler's Places budget, so one search cannot flood the quota.
  * @param {string} placeId - Google Place ID
  * @returns {Promise<Object|null>} - Detailed place information
  */
 export async function getPlaceDetails(placeId) {
+  const { details: cached, staleGroups } = getCachedPlaceDetails(placeId);
+  if (staleGroups.length === 0) {
+    return formatPlaceDetails(cached);
+  }
+
   try {
-    console.log(`Fetching details for place: ${placeId}`);
+    const result = await placeDetailsRequests.run(
+      `${placeId}|${staleGroups.join(',')}`,
+      () => fetchPlaceDetailFields(placeId, staleGroups)
+    );
+    if (!result) {
+      return formatStalePlaceDetails(placeId, cached, staleGroups);
+    }
 
-    const response = await mapsClient.placeDetails({
-      params: {
-        place_id: placeId,
-        fields: [
-          'place_id',
-          'name',
-          'geometry',
-          'rating',
-          'user_ratings_total',
-          'formatted_address',
-          'opening_hours',
-          'types',
-          'website',
-          'formatted_phone_number',
-          'vicinity',
-          'reviews'
-        ],
-        key: process.env.GOOGLE_MAPS_API_KEY
-      }
-    });
+    return formatPlaceDetails(setCachedPlaceDetails(placeId, result, staleGroups));
+  } catch (error) {
+    console.error(`Error getting place details for ${placeId}:`, error.message);
+    return formatStalePlaceDetails(placeId, cached, staleGroups);
+  }
+}
 
-    console.log(`Place details response status for ${placeId}: ${response.data.status}`);
+/**
+ * When a refetch fails, serve the expired cached fields rather than dropping the place.
+ * staleGroups lists the field groups that could not be refreshed.
+ * @returns {Object|null} - Formatted details, or null when nothing usable is cached
+ */
+function formatStalePlaceDetails(placeId, cached, staleGroups) {
+  if (!cached?.geometry?.location) {
+    return null;
+  }
+  console.warn(`⚠️ Serving stale place details for ${placeId} (${staleGroups.join(', ')})`);
+  return {
+    ...formatPlaceDetails(cached),
+    staleGroups
+  };
+}
 
-    if (response.data.status !== 'OK') {
-      console.error(`Failed to get details for place ${placeId}: ${response.data.status}`);
-      console.error(`Error message: ${response.data.error_message || 'None'}`);
-      return null;
+/**
+ * Request only the fields belonging to the given groups from Place Details.
+ * @returns {Promise<Object|null>} - Raw result, or null when Google reports an error
+ */
+async function fetchPlaceDetailFields(placeId, groups) {
+  console.log(`Fetching details for place: ${placeId} (${groups.join(', ')})`);
+
+  const response = await scheduleOutbound('places', () => mapsClient.placeDetails({
+    params: {
+      place_id: placeId,
+      fields: groups.flatMap((group) => PLACE_DETAIL_FIELD_GROUPS[group].fields),
+      key: process.env.GOOGLE_MAPS_API_KEY
     }
+  }));
 
-    const result = response.data.result;
-    return {
-      placeId: result.place_id,
-      name: result.name,
-      location: {
-        lat: result.geometry.location.lat,
-        lng: result.geometry.location.lng
-      },
-      rating: result.rating || 0,
-      reviewCount: result.user_ratings_total || 0,
-      address: result.formatted_address,
-      vicinity: result.vicinity,
-      openNow: result.opening_hours?.open_now,
-      types: result.types || [],
-      website: result.website,
-      phone: result.formatted_phone_number,
-      reviews: result.reviews || []
-    };
-  } catch (error) {
-    console.error(`Error getting place details for ${placeId}:`, error.message);
+  console.log(`Place details response status for ${placeId}: ${response.data.status}`);
+
+  if (response.data.status !== 'OK') {
+    console.error(`Failed to get details for place ${placeId}: ${response.data.status}`);
+    console.error(`Error message: ${response.data.error_message || 'None'}`);
     return null;
   }
+
+  return response.data.result;
 }
 
 /**
- * Calculate distance between two points using Haversine formula (in meters)
- * @param {number} lat1 - Latitude of point 1
- * @param {number} lng1 - Longitude of point 1
- * @param {number} lat2 - Latitude of point 2
- * @param {number} lng2 - Longitude of point 2
- * @returns {number} - Distance in meters
+ * Feed detailed places into the nearest-place index (no keyword tag: these searches
+ * use type filters, so only the place names are reliable tags).
  */
-export function calculateDistance(lat1, lng1, lat2, lng2) {
-  const R = 6371; // Earth's radius in kilometers
-  const dLat = toRad(lat2 - lat1);
-  const dLng = toRad(lng2 - lng1);
-  const a =
-    Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-    Math.cos(toRad(lat1)) *
-      Math.cos(toRad(lat2)) *
-      Math.sin(dLng / 2) *
-      Math.sin(dLng / 2);
-  const c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-  return R * c * 1000; // Convert to meters
+function indexDetailedPlaces(detailedPlaces) {
+  indexPlaces(detailedPlaces.map((place) => ({
+    lat: place.location.lat,
+    lng: place.location.lng,
+    formattedAddress: place.vicinity || place.address,
+    placeId: place.placeId,
+    name: place.name,
+    rating: place.rating,
+    types: place.types
+  })));
 }
 
-function toRad(deg) {
-  return (deg * Math.PI) / 180;
+function formatPlaceDetails(result) {
+  return {
+    placeId: result.place_id,
+    name: result.name,
+    location: {
+      lat: result.geometry.location.lat,
+      lng: result.geometry.location.lng
+    },
+    rating: result.rating || 0,
+    reviewCount: result.user_ratings_total || 0,
+    address: result.formatted_address,
+    vicinity: result.vicinity,
+    openNow: result.opening_hours?.open_now,
+    types: result.types || [],
+    website: result.website,
+    phone: result.formatted_phone_number,
+    reviews: result.reviews || []
+  };
+}
+
+/**
+ * Counters for the place-details cache and coalesced upstream requests.
+ */
+export function getPlaceDetailsStats() {
+  return {
+    cache: getPlaceDetailsCacheStats(),
+    upstream: placeDetailsRequests.getStats()
+  };
+}
+
+/**
+ * Indices 0..count-1 ordered coarse-to-fine (ends, middle, quarters, ...), so a search
+ * that stops early has still sampled the whole route evenly.
+ */
+function coarseToFineOrder(count) {
+  const order = count > 1 ? [0, count - 1] : [0];
+  const intervals = [[0, count - 1]];
+  while (intervals.length > 0) {
+    const [start, end] = intervals.shift();
+    if (end - start < 2) continue;
+    const mid = (start + end) >> 1;
+    order.push(mid);
+    intervals.push([start, mid], [mid, end]);
+  }
+  return order;
+}
+
+/**
+ * Pick search-point spacing and query radius for a corridor of `corridorRadius` meters
+ * around the route. Spacing grows with route length so the first pass fits in about
+ * three quarters of the query budget (the rest is kept for dense areas), but never drops
+ * below 1.5x the corridor radius. Each circle reaches the corridor edge halfway to the
+ * next point - r² = (spacing/2)² + corridorRadius² - so neighbouring circles overlap
+ * just enough to leave no gaps.
+ * @returns {{spacing: number, queryRadius: number}}
+ */
+function planAlongRouteSearch(routeLength, corridorRadius, maxQueries) {
+  const firstPassQueries = Math.max(2, Math.floor(maxQueries * 0.75));
+  const maxSpacing = 2 * Math.sqrt(Math.max(NEARBY_MAX_RADIUS_M ** 2 - corridorRadius ** 2, 0));
+  const spacing = Math.min(
+    maxSpacing,
+    Math.max(corridorRadius * 1.5, routeLength / (firstPassQueries - 1))
+  );
+  return {
+    spacing,
+    queryRadius: Math.min(NEARBY_MAX_RADIUS_M, Math.hypot(spacing / 2, corridorRadius))
+  };
 }
 
 /**
  * Find coffee shops along a navigation route
- * @param {Object} route - Route object with origin, destination, and waypoints
+ * @param {Object} route - Normalized route (overview_polyline, stops) or { origin, destination, waypoints }
  * @param {number} radius - Search radius from route in meters (default: 5000)
- * @returns {Promise<Array>} - Array of coffee shop places with route proximity data
+ * @param {string} keyword - Places keyword (default: 'coffee')
+ * @param {Object} options
+ * @param {number} options.maxQueries - Nearby Search calls allowed for this search
+ * @param {number} options.targetResults - Stop querying once this many rated in-corridor shops are found
+ * @param {Function} options.onShops - Called with each batch of detailed in-corridor shops as it arrives
+ *   (e.g. to feed a createShopRanker), before the search finishes
+ * @returns {Promise<Array>} - Coffee shops within radius of the route, ordered by position along it
  */
-export async function findCoffeeShopsAlongRoute(route, radius = 5000, keyword = 'coffee') {
+export async function findCoffeeShopsAlongRoute(route, radius = 5000, keyword = 'coffee', options = {}) {
+  const {
+    maxQueries = ALONG_ROUTE_MAX_QUERIES,
+    targetResults = ALONG_ROUTE_TARGET_RESULTS,
+    onShops = null
+  } = options;
+
   try {
+    const stops = getRouteStops(route);
     console.log('=== Coffee Shop Search Along Route ===');
-    console.log(`Route: ${route.origin.name || 'Origin'} → ${route.destination.name || 'Destination'}`);
-    console.log(`Waypoints: ${route.waypoints?.length || 0}`);
+    console.log(`Route: ${stops[0]?.name || 'Origin'} → ${stops[stops.length - 1]?.name || 'Destination'}`);
+    console.log(`Waypoints: ${Math.max(0, stops.length - 2)}`);
     console.log(`Search radius: ${radius}m from route`);
     console.log(`Keyword: ${keyword}`);
 
-    // Generate search points along the route
-    // Use larger spacing (50km) to avoid too many API calls
-    const searchPoints = generateRoutePoints(route, 50000);
-    console.log(`Generated ${searchPoints.length} search points along route`);
+    // Decode the polyline once; search points and proximity both use the road geometry
+    const geometry = buildRouteGeometry(route);
+    const segmentIndex = new RouteSegmentIndex(geometry);
+    console.log(`Route geometry: ${geometry.pointCount} points from ${geometry.source}, ${(geometry.length / 1000).toFixed(1)}km`);
 
-    // Search for coffee shops near each point
+    const { spacing, queryRadius } = planAlongRouteSearch(geometry.length, radius, maxQueries);
+    const samples = samplePointsAlongRoute(geometry, spacing);
+    const searchPoints = coarseToFineOrder(samples.length).map((i) => samples[i]);
+    console.log(`Generated ${searchPoints.length} search points every ${(spacing / 1000).toFixed(1)}km, query radius ${Math.round(queryRadius)}m`);
+
+    // Search for coffee shops near each point, a few queries at a time
     const allShops = new Map(); // Use Map to deduplicate by placeId
+    const shopsAlongRoute = [];
+    const limitQueries = createConcurrencyLimiter(ALONG_ROUTE_CONCURRENCY);
+    const pending = [];
+    let issued = 0;
+    let skipped = 0;
+    let goodCandidates = 0;
+    let stopped = false;
+
+    const fetchRouteShopDetails = async (batch) => {
+      const detailed = await Promise.all(batch.map(shop => getPlaceDetailsForRoute(shop, segmentIndex)));
+
+      // Filter shops that are actually near the route (within radius)
+      const nearRoute = detailed.filter(shop => {
+        if (!shop) return false;
+        if (shop.distanceFromRoute <= radius) return true;
+        console.log(`  Filtered out: ${shop.name} (${(shop.distanceFromRoute / 1000).toFixed(1)}km from route)`);
+        return false;
+      });
+      if (nearRoute.length === 0) return;
+
+      shopsAlongRoute.push(...nearRoute);
+      try {
+        onShops?.(nearRoute);
+      } catch (error) {
+        console.error('Along-route onShops callback failed:', error.message);
+      }
+    };
 
-    for (let i = 0; i < searchPoints.length; i++) {
-      const point = searchPoints[i];
-      console.log(`Searching near point ${i + 1}/${searchPoints.length}: (${point.lat.toFixed(4)}, ${point.lng.toFixed(4)})`);
+    const searchAt = (point, pointRadius, refined) => limitQueries(async () => {
+      if (stopped || issued >= maxQueries) {
+        skipped += 1;
+        return;
+      }
+      issued += 1;
+      const queryNumber = issued;
+      console.log(`Searching near point ${queryNumber} (${(point.distanceAlong / 1000).toFixed(1)}km along${refined ? ', refined' : ''}): (${point.lat.toFixed(4)}, ${point.lng.toFixed(4)})`);
 
       try {
-        const response = await mapsClient.placesNearby({
+        const response = await scheduleOutbound('places', () => mapsClient.placesNearby({
           params: {
             location: { lat: point.lat, lng: point.lng },
-            radius,
+            radius: Math.round(pointRadius),
             type: 'cafe',
             keyword,
             key: process.env.GOOGLE_MAPS_API_KEY
           }
-        });
+        }));
 
         if (response.data.status === 'OK' && response.data.results) {
-          console.log(`  Found ${response.data.results.length} results at this point`);
-
-          // Add shops to our map (deduplicates automatically)
-          response.data.results.forEach(shop => {
-            if (!allShops.has(shop.place_id)) {
-              allShops.set(shop.place_id, {
-                ...shop,
-                foundAt: point
-              });
+          const results = response.data.results;
+          console.log(`  Found ${results.length} results at point ${queryNumber}`);
+
+          // Keep only shops inside the corridor, so Place Details is never fetched for the rest
+          const batch = [];
+          for (const shop of results) {
+            if (allShops.has(shop.place_id) || !shop.geometry?.location) continue;
+            const nearest = segmentIndex.nearest(shop.geometry.location);
+            if (nearest.distance > radius) continue;
+            allShops.set(shop.place_id, { ...shop, foundAt: point });
+            batch.push(allShops.get(shop.place_id));
+            if ((shop.rating || 0) >= ALONG_ROUTE_GOOD_RATING) goodCandidates += 1;
+          }
+          if (batch.length > 0) {
+            // Not awaited here, so the query slot is free while details load
+            pending.push(fetchRouteShopDetails(batch));
+          }
+
+          if (goodCandidates >= targetResults && !stopped) {
+            stopped = true;
+            console.log(`  ${goodCandidates} good candidates found - skipping remaining search points`);
+          }
+
+          // Dense area: split this point's stretch into two smaller circles
+          if (!refined && !stopped && results.length >= NEARBY_PAGE_SIZE) {
+            const quarter = spacing / 4;
+            const refinedRadius = Math.hypot(quarter, radius);
+            for (const offset of [-quarter, quarter]) {
+              pending.push(searchAt(pointAtDistance(geometry, point.distanceAlong + offset), refinedRadius, true));
             }
-          });
+          }
         } else if (response.data.status === 'ZERO_RESULTS') {
-          console.log('  No results at this point');
+          console.log(`  No results at point ${queryNumber}`);
         } else {
           console.log(`  API returned status: ${response.data.status}`);
         }
       } catch (error) {
-        console.error(`  Error searching at point ${i + 1}:`, error.message);
+        console.error(`  Error searching at point ${queryNumber}:`, error.message);
         // Continue with other points even if one fails
       }
+    });
+
+    pending.push(...searchPoints.map((point) => searchAt(point, queryRadius, false)));
+    while (pending.length > 0) {
+      await Promise.all(pending.splice(0));
     }
 
-    console.log(`Total unique coffee shops found: ${allShops.size}`);
+    console.log(`Queried ${issued} points (${skipped} skipped), ${allShops.size} unique coffee shops within ${radius}m of route`);
 
     if (allShops.size === 0) {
       console.log('=== End Coffee Shop Search (No Results) ===');
       return [];
     }
 
-    // Get detailed information for each unique shop
-    console.log('Fetching details for each coffee shop...');
-    const detailedPlaces = await Promise.all(
-      Array.from(allShops.values()).map(shop => getPlaceDetailsForRoute(shop, route))
-    );
-
-    const validPlaces = detailedPlaces.filter(place => place !== null);
-
-    // Filter shops that are actually near the route (within radius)
-    const shopsAlongRoute = validPlaces.filter(shop => {
-      if (shop.distanceFromRoute <= radius) {
-        return true;
-      }
-      console.log(`  Filtered out: ${shop.name} (${(shop.distanceFromRoute / 1000).toFixed(1)}km from route)`);
-      return false;
-    });
+    shopsAlongRoute.sort((a, b) => a.distanceAlongRoute - b.distanceAlongRoute);
 
     console.log(`Coffee shops within ${radius}m of route: ${shopsAlongRoute.length}`);
     console.log('=== End Coffee Shop Search Along Route ===');
@@ -357,71 +518,24 @@ export async function findCoffeeShopsAlongRoute(route, radius = 5000, keyword =
 /**
  * Get detailed information about a place for route-based search
  * @param {Object} shop - Basic shop info from Places Nearby
- * @param {Object} route - Route object for distance calculation
+ * @param {RouteSegmentIndex} segmentIndex - Segment index over the route geometry
  * @returns {Promise<Object|null>} - Detailed place information with route proximity
  */
-async function getPlaceDetailsForRoute(shop, route) {
-  try {
-    const placeId = shop.place_id;
-    console.log(`Fetching details for place: ${placeId}`);
-
-    const response = await mapsClient.placeDetails({
-      params: {
-        place_id: placeId,
-        fields: [
-          'place_id',
-          'name',
-          'geometry',
-          'rating',
-          'user_ratings_total',
-          'formatted_address',
-          'opening_hours',
-          'types',
-          'website',
-          'formatted_phone_number',
-          'vicinity',
-          'reviews'
-        ],
-        key: process.env.GOOGLE_MAPS_API_KEY
-      }
-    });
-
-    console.log(`Place details response status for ${placeId}: ${response.data.status}`);
+async function getPlaceDetailsForRoute(shop, segmentIndex) {
+  const details = await getPlaceDetails(shop.place_id);
+  if (!details) {
+    return null;
+  }
 
-    if (response.data.status !== 'OK') {
-      console.error(`Failed to get details for place ${placeId}: ${response.data.status}`);
-      console.error(`Error message: ${response.data.error_message || 'None'}`);
-      return null;
-    }
+  // Distance from this shop to the road, and where along the route it sits
+  const nearest = segmentIndex.nearest(details.location);
 
-    const result = response.data.result;
+  console.log(`  ${details.name}: ${(nearest.distance / 1000).toFixed(1)}km from route, ${(nearest.distanceAlong / 1000).toFixed(1)}km along`);
 
-    // Calculate distance from this shop to the route
-    const shopLocation = {
-      lat: result.geometry.location.lat,
-      lng: result.geometry.location.lng
-    };
-    const distanceFromRoute = distanceToRoute(shopLocation, route);
-
-    console.log(`  ${result.name}: ${(distanceFromRoute / 1000).toFixed(1)}km from route`);
-
-    return {
-      placeId: result.place_id,
-      name: result.name,
-      location: shopLocation,
-      rating: result.rating || 0,
-      reviewCount: result.user_ratings_total || 0,
-      address: result.formatted_address,
-      vicinity: result.vicinity,
-      openNow: result.opening_hours?.open_now,
-      types: result.types || [],
-      website: result.website,
-      phone: result.formatted_phone_number,
-      reviews: result.reviews || [],
-      distanceFromRoute // Add this for filtering and scoring
-    };
-  } catch (error) {
-    console.error(`Error getting place details for ${shop.place_id}:`, error.message);
-    return null;
-  }
+  return {
+    ...details,
+    distanceFromRoute: nearest.distance, // Add this for filtering and scoring
+    distanceAlongRoute: nearest.distanceAlong,
+    routeSegmentIndex: nearest.segmentIndex
+  };
 }
@@ -0,0 +1,92 @@
+import { LruCache } from '../utils/lruCache.js';
+
+/**
+ * In-memory cache of normalized routing results (legs, polyline, bounds, totals).
+ * Stop edits in the UI often go back to a stop list we already routed, so the key
+ * is the ordered list of stops - quantized coordinates, place ID and via flag -
+ * plus the routing API. TTLs follow the time of day: durations move most during
+ * rush hour, so those entries expire first.
+ */
+
+const MINUTE_MS = 60 * 1000;
+const PEAK_TTL_MS = Number(process.env.ROUTE_CACHE_PEAK_TTL_MINUTES || 10) * MINUTE_MS;
+const OFFPEAK_TTL_MS = Number(process.env.ROUTE_CACHE_OFFPEAK_TTL_MINUTES || 60) * MINUTE_MS;
+const NIGHT_TTL_MS = Number(process.env.ROUTE_CACHE_NIGHT_TTL_MINUTES || 180) * MINUTE_MS;
+const MAX_ENTRIES = Number(process.env.ROUTE_CACHE_MAX_ENTRIES || 500);
+
+// 4 decimal places ≈ 11m: the same stop re-geocoded lands in the same key.
+const COORDINATE_DECIMALS = 4;
+
+const memoryCache = new LruCache(MAX_ENTRIES);
+
+const stats = {
+  hits: 0,
+  misses: 0,
+  writes: 0,
+  uncacheable: 0
+};
+
+/**
+ * Build the cache key for a geocoded stop list.
+ * @param {string} routingApi - "directions" or "routes"
+ * @param {Array<Object>} geocodedStops - Stops with lat/lng, optional placeId and via
+ * @returns {string|null} - Cache key, or null if a stop has no coordinates
+ */
+export function buildRouteCacheKey(routingApi, geocodedStops) {
+  const parts = [routingApi];
+
+  for (const stop of geocodedStops) {
+    if (!Number.isFinite(stop?.lat) || !Number.isFinite(stop?.lng)) {
+      stats.uncacheable += 1;
+      return null;
+    }
+    const coords = `${stop.lat.toFixed(COORDINATE_DECIMALS)},${stop.lng.toFixed(COORDINATE_DECIMALS)}`;
+    parts.push(`${stop.via ? 'via' : 'stop'}:${stop.placeId || ''}@${coords}`);
+  }
+
+  return parts.join('|');
+}
+
+/**
+ * TTL for a route computed at the given time (server local time).
+ * Weekday rush hours (7-10, 16-19) get the shortest TTL, nights (22-5) the longest.
+ */
+export function getRouteCacheTtlMs(date = new Date()) {
+  const hour = date.getHours();
+  const day = date.getDay();
+  const isWeekday = day >= 1 && day <= 5;
+
+  if (hour >= 22 || hour < 5) return NIGHT_TTL_MS;
+  if (isWeekday && ((hour >= 7 && hour < 10) || (hour >= 16 && hour < 19))) return PEAK_TTL_MS;
+  return OFFPEAK_TTL_MS;
+}
+
+/**
+ * Look up a normalized route.
+ * @param {string} key - Key from buildRouteCacheKey
+ * @returns {Object|null} - A copy of { legs, overview_polyline, bounds, totals }, or null on miss
+ */
+export function getCachedRoute(key) {
+  const cached = memoryCache.get(key);
+  if (!cached) {
+    stats.misses += 1;
+    return null;
+  }
+  stats.hits += 1;
+  return structuredClone(cached);
+}
+
+export function setCachedRoute(key, normalizedRoute) {
+  memoryCache.set(key, structuredClone(normalizedRoute), getRouteCacheTtlMs());
+  stats.writes += 1;
+}
+
+export function getRouteCacheStats() {
+  const lookups = stats.hits + stats.misses;
+  return {
+    ...stats,
+    memoryEntries: memoryCache.size,
+    currentTtlMinutes: getRouteCacheTtlMs() / MINUTE_MS,
+    hitRate: lookups > 0 ? stats.hits / lookups : 0
+  };
+}
@@ -1,12 +1,7 @@
-import { getDatabase } from '../db/database.js';
+import { getStatements } from '../db/database.js';
 
 export function saveRoute(userId, routeName, stops) {
-  const db = getDatabase();
-
-  const result = db.prepare(`
-    INSERT INTO saved_routes (user_id, route_name, stops_json)
-    VALUES (?, ?, ?)
-  `).run(
+  const result = getStatements().savedRoutes.insert.run(
     userId,
     routeName,
     JSON.stringify(stops)
@@ -17,57 +12,27 @@ export function saveRoute(userId, routeName, stops) {
 }
 
 export function getSavedRoutes(userId) {
-  const db = getDatabase();
-
-  return db.prepare(`
-    SELECT id, route_name, stops_json, created_at, last_used
-    FROM saved_routes
-    WHERE user_id = ?
-    ORDER BY last_used DESC, created_at DESC
-  `).all(userId);
+  return getStatements().savedRoutes.listForUser.all(userId);
 }
 
 export function getSavedRouteById(routeId, userId) {
-  const db = getDatabase();
-
-  return db.prepare(`
-    SELECT id, route_name, stops_json, created_at, last_used
-    FROM saved_routes
-    WHERE id = ? AND user_id = ?
-  `).get(routeId, userId);
+  return getStatements().savedRoutes.findById.get(routeId, userId);
 }
 
 export function updateSavedRoute(routeId, userId, routeName, stops) {
-  const db = getDatabase();
-
-  const result = db.prepare(`
-    UPDATE saved_routes
-    SET route_name = ?, stops_json = ?, last_used = datetime('now')
-    WHERE id = ? AND user_id = ?
-  `).run(routeName, JSON.stringify(stops), routeId, userId);
+  const result = getStatements().savedRoutes.update.run(routeName, JSON.stringify(stops), routeId, userId);
 
   return result.changes > 0;
 }
 
 export function updateRouteLastUsed(routeId, userId) {
-  const db = getDatabase();
-
-  const result = db.prepare(`
-    UPDATE saved_routes
-    SET last_used = datetime('now')
-    WHERE id = ? AND user_id = ?
-  `).run(routeId, userId);
+  const result = getStatements().savedRoutes.touch.run(routeId, userId);
 
   return result.changes > 0;
 }
 
 export function deleteSavedRoute(routeId, userId) {
-  const db = getDatabase();
-
-  const result = db.prepare(`
-    DELETE FROM saved_routes
-    WHERE id = ? AND user_id = ?
-  `).run(routeId, userId);
+  const result = getStatements().savedRoutes.delete.run(routeId, userId);
 
   return result.changes > 0;
 }
@@ -1,7 +1,7 @@
-import { getDatabase } from '../db/database.js';
+import { getStatements } from '../db/database.js';
 
 export function createOrLoginUser(username, email = null) {
-  const db = getDatabase();
+  const { users } = getStatements();
   const normalizedEmail = typeof email === 'string' && email.trim() ? email.trim() : null;
 
   if (!normalizedEmail) {
@@ -9,27 +9,24 @@ export function createOrLoginUser(username, email = null) {
   }
 
   // Check if user exists by email (case-insensitive)
-  let user = db.prepare('SELECT * FROM users WHERE email = ? COLLATE NOCASE').get(normalizedEmail);
+  let user = users.findByEmail.get(normalizedEmail);
 
   if (!user) {
     // If username exists, allow linking email once (legacy users)
-    const existingUsername = db.prepare('SELECT * FROM users WHERE username = ? COLLATE NOCASE').get(username);
+    const existingUsername = users.findByUsername.get(username);
     if (existingUsername) {
       if (existingUsername.email && existingUsername.email.trim()) {
         throw new Error('Username is already taken');
       }
 
-      db.prepare("UPDATE users SET last_login = datetime('now'), email = ? WHERE id = ?")
-        .run(normalizedEmail, existingUsername.id);
-      user = db.prepare('SELECT * FROM users WHERE id = ?').get(existingUsername.id);
+      users.recordLogin.run(normalizedEmail, existingUsername.id);
+      user = users.findById.get(existingUsername.id);
       console.log('Linked email to existing user:', username);
     } else {
       // Create new user
-      const result = db.prepare(
-        'INSERT INTO users (username, email) VALUES (?, ?)'
-      ).run(username, normalizedEmail);
+      const result = users.insert.run(username, normalizedEmail);
 
-      user = db.prepare('SELECT * FROM users WHERE id = ?').get(result.lastInsertRowid);
+      user = users.findById.get(result.lastInsertRowid);
       console.log('Created new user:', username);
     }
   } else {
@@ -41,9 +38,8 @@ export function createOrLoginUser(username, email = null) {
     }
 
     // Update last login (and normalize email in case of casing differences)
-    db.prepare("UPDATE users SET last_login = datetime('now'), email = ? WHERE id = ?")
-      .run(normalizedEmail, user.id);
-    user = db.prepare('SELECT * FROM users WHERE id = ?').get(user.id);
+    users.recordLogin.run(normalizedEmail, user.id);
+    user = users.findById.get(user.id);
     console.log('User logged in:', username);
   }
 
@@ -51,11 +47,9 @@ export function createOrLoginUser(username, email = null) {
 }
 
 export function getUserById(userId) {
-  const db = getDatabase();
-  return db.prepare('SELECT * FROM users WHERE id = ?').get(userId);
+  return getStatements().users.findById.get(userId);
 }
 
 export function getAllUsers() {
-  const db = getDatabase();
-  return db.prepare('SELECT id, username, created_at, last_login FROM users ORDER BY last_login DESC').all();
+  return getStatements().users.listAll.all();
 }
@@ -0,0 +1,267 @@
+import crypto from 'crypto';
+import fs from 'fs';
+import path from 'path';
+import { pipeline } from 'stream/promises';
+import { extractStopsFromAudioFile } from './gemini.js';
+import { runInBackground } from './outboundScheduler.js';
+
+/**
+ * Voice sessions let the client upload a recording in chunks while the user is still talking.
+ * Chunks are appended to one file on disk. Every few seconds the audio received so far is
+ * snapshotted and sent to Gemini in the background lane, so stops that were already spoken
+ * can be geocoded before the recording ends. finish runs the normal pipeline on the full file.
+ */
+
+const SESSION_TTL_MS = Number(process.env.VOICE_SESSION_TTL_SECONDS || 120) * 1000;
+const MAX_SESSIONS = Number(process.env.VOICE_SESSION_MAX || 50);
+const MAX_SESSIONS_PER_OWNER = Number(process.env.VOICE_SESSION_MAX_PER_OWNER || 2);
+const MAX_SESSION_BYTES = 10 * 1024 * 1024; // same as the /process-voice upload limit
+const PARTIAL_INTERVAL_MS = Number(process.env.VOICE_SESSION_PARTIAL_INTERVAL_MS || 2000);
+const MAX_PARTIALS = Number(process.env.VOICE_SESSION_MAX_PARTIALS || 4);
+
+const sessions = new Map();
+
+const stats = {
+  created: 0,
+  finished: 0,
+  expired: 0,
+  rejected: 0,
+  chunks: 0,
+  bytes: 0,
+  partialExtractions: 0,
+  partialFailures: 0
+};
+
+function removeSessionFiles(session) {
+  fs.promises.rm(session.filePath, { force: true }).catch((error) => {
+    console.error('Failed to remove voice session audio:', error);
+  });
+}
+
+function sweepExpiredSessions() {
+  const now = Date.now();
+  for (const [id, session] of sessions) {
+    if (now - session.lastActivity > SESSION_TTL_MS) {
+      sessions.delete(id);
+      removeSessionFiles(session);
+      stats.expired += 1;
+    }
+  }
+}
+
+/**
+ * Owner key for voice sessions: the logged-in user, else the guest's express session.
+ * Marks the guest session so its cookie is saved and sent with the chunk requests.
+ * @param {Object} req - Express request (after optionalAuth)
+ * @returns {string|null} - Owner key, or null when there is no session to tie it to
+ */
+export function getVoiceSessionOwner(req) {
+  if (req.userId) {
+    return `user:${req.userId}`;
+  }
+  if (!req.session) {
+    return null;
+  }
+  req.session.hasVoiceSession = true;
+  return `session:${req.sessionID}`;
+}
+
+function countOwnerSessions(owner) {
+  let count = 0;
+  for (const session of sessions.values()) {
+    if (session.owner === owner) count += 1;
+  }
+  return count;
+}
+
+/**
+ * Start a voice session.
+ * @param {Object} options
+ * @param {string} options.owner - Key from getVoiceSessionOwner
+ * @param {string} options.directory - Directory for the session's audio file
+ * @param {string} options.mimeType - MediaRecorder mime type
+ * @param {Object} options.context - Request context kept for finish (currentRoute, userLocation)
+ * @param {Function} options.onPartialResult - Called with (extraction, session) for each partial transcript
+ * @returns {{session?: Object, status?: number, error?: string}} - The session, or the
+ *   HTTP status and error when the owner or the server already has too many sessions open
+ */
+export function createVoiceSession({ owner, directory, mimeType, context = {}, onPartialResult = null }) {
+  sweepExpiredSessions();
+  if (countOwnerSessions(owner) >= MAX_SESSIONS_PER_OWNER) {
+    stats.rejected += 1;
+    return { status: 429, error: 'Too many recordings in progress for this user' };
+  }
+  if (sessions.size >= MAX_SESSIONS) {
+    stats.rejected += 1;
+    return { status: 503, error: 'Too many recordings in progress' };
+  }
+
+  fs.mkdirSync(directory, { recursive: true });
+  const id = crypto.randomUUID();
+  const session = {
+    id,
+    owner,
+    mimeType: mimeType || 'audio/webm',
+    context,
+    onPartialResult,
+    filePath: path.join(directory, `${Date.now()}-${id}.session`),
+    hash: crypto.createHash('sha256'),
+    bytes: 0,
+    nextSeq: 0,
+    writes: Promise.resolve(),
+    partials: 0,
+    partialRunning: false,
+    lastPartialAt: Date.now(),
+    lastActivity: Date.now()
+  };
+
+  sessions.set(id, session);
+  stats.created += 1;
+  return { session };
+}
+
+/**
+ * Look up a live session. Sessions owned by someone else are reported as missing.
+ * @param {string} id - Session id
+ * @param {string|null} owner - Key from getVoiceSessionOwner
+ * @returns {Object|null}
+ */
+export function getVoiceSession(id, owner) {
+  const session = sessions.get(id);
+  if (!session || !owner || session.owner !== owner) return null;
+  if (Date.now() - session.lastActivity > SESSION_TTL_MS) {
+    sessions.delete(id);
+    removeSessionFiles(session);
+    stats.expired += 1;
+    return null;
+  }
+  return session;
+}
+
+/**
+ * Append the next chunk. Chunks must arrive in order (seq 0, 1, 2, ...), one at a time.
+ * The session only advances once the chunk is on disk, so after a failed write the
+ * client can resend the same seq.
+ * @returns {Promise<{status: number, error?: string}>}
+ */
+export async function appendVoiceChunk(session, seq, chunk) {
+  if (session.finishing) {
+    return { status: 409, error: 'Voice session already finished' };
+  }
+  if (session.appending) {
+    return { status: 409, error: `Chunk ${session.nextSeq} is still being written` };
+  }
+  if (seq !== session.nextSeq) {
+    return { status: 409, error: `Expected chunk ${session.nextSeq}` };
+  }
+  if (session.bytes + chunk.length > MAX_SESSION_BYTES) {
+    return { status: 413, error: 'Recording is too large' };
+  }
+
+  session.appending = true;
+  session.lastActivity = Date.now();
+
+  const write = session.writes.then(async () => {
+    try {
+      await fs.promises.appendFile(session.filePath, chunk);
+    } catch (error) {
+      // Drop any partial write so a resent chunk lands at the right offset
+      await fs.promises.truncate(session.filePath, session.bytes).catch(() => {});
+      throw error;
+    }
+    session.nextSeq += 1;
+    session.bytes += chunk.length;
+    session.hash.update(chunk);
+    stats.chunks += 1;
+    stats.bytes += chunk.length;
+  });
+  // finishVoiceSession waits on this chain, so it must not stay rejected after one failure
+  session.writes = write.catch(() => {});
+
+  try {
+    await write;
+  } finally {
+    session.appending = false;
+  }
+
+  maybeStartPartialExtraction(session);
+  return { status: 200 };
+}
+
+function maybeStartPartialExtraction(session) {
+  if (!session.onPartialResult || session.finishing || session.partialRunning) return;
+  if (session.partials >= MAX_PARTIALS) return;
+  if (Date.now() - session.lastPartialAt < PARTIAL_INTERVAL_MS) return;
+
+  session.partialRunning = true;
+  session.partials += 1;
+  session.lastPartialAt = Date.now();
+  stats.partialExtractions += 1;
+
+  runPartialExtraction(session, session.bytes)
+    .catch((error) => {
+      stats.partialFailures += 1;
+      console.log(`Partial transcription failed for voice session ${session.id}:`, error.message);
+    })
+    .finally(() => {
+      session.partialRunning = false;
+    });
+}
+
+/**
+ * Transcribe the first `bytes` bytes of the recording. MediaRecorder's first chunk carries
+ * the container header, so any prefix of the appended chunks is itself playable audio.
+ */
+async function runPartialExtraction(session, bytes) {
+  const snapshotPath = `${session.filePath}.${bytes}`;
+  try {
+    await pipeline(
+      fs.createReadStream(session.filePath, { start: 0, end: bytes - 1 }),
+      fs.createWriteStream(snapshotPath)
+    );
+    // Snapshots are never requested again, so keep them out of the extraction cache
+    const extraction = await runInBackground(() => extractStopsFromAudioFile(
+      snapshotPath,
+      session.mimeType,
+      session.context.currentRoute || null,
+      { useCache: false }
+    ));
+    console.log(`🎙️  Partial transcript (${bytes} bytes): "${extraction.transcript || ''}"`);
+    await session.onPartialResult(extraction, session);
+  } finally {
+    await fs.promises.rm(snapshotPath, { force: true });
+  }
+}
+
+/**
+ * Close the session for new chunks and wait for pending writes.
+ * @returns {Promise<{path: string, size: number, sha256: string, mimetype: string}>} - Multer-like file
+ */
+export async function finishVoiceSession(session) {
+  session.finishing = true;
+  session.lastActivity = Date.now();
+  await session.writes;
+  return {
+    path: session.filePath,
+    size: session.bytes,
+    sha256: session.hash.digest('hex'),
+    mimetype: session.mimeType
+  };
+}
+
+/**
+ * Forget a session and delete its audio (no-op if the file was moved into voice_buffer/).
+ */
+export function closeVoiceSession(session, { finished = false } = {}) {
+  if (sessions.delete(session.id) && finished) {
+    stats.finished += 1;
+  }
+  removeSessionFiles(session);
+}
+
+export function getVoiceSessionStats() {
+  return {
+    ...stats,
+    active: sessions.size
+  };
+}
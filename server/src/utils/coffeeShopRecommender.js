@@ -1,4 +1,72 @@
-import { calculateDistance } from './placeService.js';
+import { calculateDistance, distancesFrom } from './geo.js';
+
+/**
+ * Coffee shop ranking.
+ * Each shop's score inputs (distance, rating, reviews, open now) are computed once into a
+ * feature record, and only the best `limit` shops are kept in a bounded heap, so ranking
+ * n candidates costs O(n log limit) instead of a full sort. A ranker can also take
+ * candidates in batches (e.g. one per along-route query) and report the current top list
+ * after each batch.
+ */
+
+/**
+ * Score weights. "point" ranks around a location, "route" gives proximity to the route
+ * slightly more weight.
+ */
+export const WEIGHT_PROFILES = {
+  point: { rating: 0.4, reviews: 0.3, distance: 0.2, openNow: 0.1 },
+  route: { rating: 0.4, reviews: 0.3, distance: 0.25, openNow: 0.1 }
+};
+
+const DEFAULT_MAX_DISTANCE = 5000;
+
+function resolveWeights(weights, isRouteSearch) {
+  if (weights && typeof weights === 'object') return weights;
+  return WEIGHT_PROFILES[weights] || WEIGHT_PROFILES[isRouteSearch ? 'route' : 'point'];
+}
+
+/**
+ * Compute a shop's score inputs once.
+ * @param {Object} shop - Coffee shop object with rating, reviewCount, location, openNow
+ * @param {number} userLat - User's latitude (or route center)
+ * @param {number} userLng - User's longitude (or route center)
+ * @param {number} maxDistance - Distance in meters at which the distance score reaches 0
+ * @param {boolean} isRouteSearch - Use distanceFromRoute for proximity when the shop has it
+ * @returns {Object} - { distance, proximity, ratingScore, reviewCountScore, distanceScore, openNowScore }
+ */
+export function extractShopFeatures(shop, userLat, userLng, maxDistance = DEFAULT_MAX_DISTANCE, isRouteSearch = false) {
+  const distance = calculateDistance(userLat, userLng, shop.location.lat, shop.location.lng);
+  return buildFeatures(shop, distance, maxDistance, isRouteSearch);
+}
+
+function buildFeatures(shop, distance, maxDistance, isRouteSearch) {
+  const proximity = isRouteSearch && shop.distanceFromRoute !== undefined ? shop.distanceFromRoute : distance;
+
+  return {
+    distance,
+    proximity,
+    // Rating score (0-10, based on 5-star system)
+    ratingScore: (shop.rating || 0) * 2,
+    // Review count score (logarithmic scale, max at 1000+ reviews)
+    reviewCountScore: Math.min(10, Math.log10((shop.reviewCount || 1) + 1) * 2),
+    // Distance score (inverse: closer = higher score)
+    distanceScore: Math.max(0, 10 - (proximity / maxDistance) * 10),
+    openNowScore: shop.openNow ? 10 : 5
+  };
+}
+
+/**
+ * Weighted score (0-10) from precomputed features, rounded to 1 decimal place.
+ */
+export function scoreFeatures(features, weights) {
+  const totalScore =
+    features.ratingScore * weights.rating +
+    features.reviewCountScore * weights.reviews +
+    features.distanceScore * weights.distance +
+    features.openNowScore * weights.openNow;
+
+  return Math.round(totalScore * 10) / 10;
+}
 
 /**
  * Calculate a recommendation score for a coffee shop
@@ -12,133 +80,194 @@ import { calculateDistance } from './placeService.js';
  * @param {boolean} isRouteSearch - Whether this is a route-based search
  * @returns {number} - Recommendation score (0-10)
  */
-export function calculateRecommendationScore(shop, userLat, userLng, maxDistance = 5000, isRouteSearch = false) {
-  // Rating score (0-10, based on 5-star system)
-  const ratingScore = (shop.rating || 0) * 2; // Normalize to 10
-  const ratingWeight = 0.4;
+export function calculateRecommendationScore(shop, userLat, userLng, maxDistance = DEFAULT_MAX_DISTANCE, isRouteSearch = false) {
+  const features = extractShopFeatures(shop, userLat, userLng, maxDistance, isRouteSearch);
+  return scoreFeatures(features, resolveWeights(null, isRouteSearch));
+}
 
-  // Review count score (logarithmic scale, max at 1000+ reviews)
-  const reviewCountScore = Math.min(10, Math.log10((shop.reviewCount || 1) + 1) * 2);
-  const reviewWeight = 0.3;
+/**
+ * Comparators over ranked entries; negative means `a` ranks ahead of `b`.
+ * Ties fall back to arrival order, matching a stable sort of the input.
+ */
+const COMPARATORS = {
+  rating: (a, b) => {
+    const ratingDiff = (b.shop.rating || 0) - (a.shop.rating || 0);
+    if (ratingDiff !== 0) return ratingDiff;
+    return a.features.proximity - b.features.proximity;
+  },
+  // Selection by distance must be a strict order for the heap; the 500m rating
+  // preference below only reorders the shops that were kept
+  distance: (a, b) => a.features.proximity - b.features.proximity,
+  reviews: (a, b) => (b.shop.reviewCount || 0) - (a.shop.reviewCount || 0),
+  score: (a, b) => b.score - a.score
+};
 
-  // Distance score (inverse: closer = higher score)
-  let distanceScore;
-  if (isRouteSearch && shop.distanceFromRoute !== undefined) {
-    // For route searches, use distance from route (shops closer to route score higher)
-    distanceScore = Math.max(0, 10 - (shop.distanceFromRoute / maxDistance) * 10);
-  } else {
-    // For point searches, use distance from point
-    const distance = calculateDistance(userLat, userLng, shop.location.lat, shop.location.lng);
-    distanceScore = Math.max(0, 10 - (distance / maxDistance) * 10);
+const DISPLAY_ORDER = {
+  distance: (a, b) => {
+    const distDiff = a.features.proximity - b.features.proximity;
+    // If shops are within 500m of each other, sort by rating instead
+    if (Math.abs(distDiff) < 500) {
+      return (b.shop.rating || 0) - (a.shop.rating || 0);
+    }
+    return distDiff;
   }
-  const distanceWeight = isRouteSearch ? 0.25 : 0.2; // Slightly higher weight for route proximity
+};
 
-  // Open now score
-  const openNowScore = shop.openNow ? 10 : 5;
-  const openNowWeight = 0.1;
+function withArrivalOrder(compare) {
+  return (a, b) => compare(a, b) || a.seq - b.seq;
+}
 
-  // Calculate weighted score
-  const totalScore =
-    ratingScore * ratingWeight +
-    reviewCountScore * reviewWeight +
-    distanceScore * distanceWeight +
-    openNowScore * openNowWeight;
+/**
+ * Binary heap that keeps the `capacity` best entries. The root is the worst kept entry,
+ * so a new candidate only costs a comparison unless it beats it.
+ */
+class TopKHeap {
+  constructor(capacity, compare) {
+    this.capacity = capacity;
+    this.compare = compare; // negative when a ranks ahead of b
+    this.items = [];
+  }
+
+  // True when a should sit above b in the heap (a ranks behind b)
+  above(a, b) {
+    return this.compare(a, b) > 0;
+  }
+
+  offer(entry) {
+    if (this.capacity <= 0) return false;
+    if (this.items.length < this.capacity) {
+      this.items.push(entry);
+      this.siftUp(this.items.length - 1);
+      return true;
+    }
+    if (!this.above(this.items[0], entry)) return false;
+    this.items[0] = entry;
+    this.siftDown(0);
+    return true;
+  }
+
+  siftUp(index) {
+    const { items } = this;
+    while (index > 0) {
+      const parent = (index - 1) >> 1;
+      if (!this.above(items[index], items[parent])) break;
+      [items[index], items[parent]] = [items[parent], items[index]];
+      index = parent;
+    }
+  }
+
+  siftDown(index) {
+    const { items } = this;
+    for (;;) {
+      const left = index * 2 + 1;
+      const right = left + 1;
+      let top = index;
+      if (left < items.length && this.above(items[left], items[top])) top = left;
+      if (right < items.length && this.above(items[right], items[top])) top = right;
+      if (top === index) break;
+      [items[index], items[top]] = [items[top], items[index]];
+      index = top;
+    }
+  }
 
-  return Math.round(totalScore * 10) / 10; // Round to 1 decimal place
+  sorted(compare = this.compare) {
+    return [...this.items].sort(compare);
+  }
 }
 
 /**
- * Recommend top coffee shops based on multiple factors
+ * Incremental ranker: add candidate batches as they arrive and read the current top list.
  *
- * @param {Array} shops - Array of coffee shop objects
  * @param {number} userLat - User's latitude (or route center for route searches)
  * @param {number} userLng - User's longitude (or route center for route searches)
- * @param {Object} options - Configuration options
- * @param {number} options.limit - Maximum number of recommendations (default: 5)
- * @param {string} options.sortBy - Sort criteria: 'score', 'rating', 'distance', 'reviews' (default: 'score')
- * @param {boolean} options.openNowOnly - Only return open shops (default: false)
- * @param {Object} options.route - Route object for route-based searches (optional)
- * @returns {Array} - Recommended shops with scores, sorted and limited
+ * @param {Object} options - Same options as recommendCoffeeShops
+ * @returns {{add: (shops: Array) => boolean, results: () => Array, size: () => number}}
+ *   add() returns true when the batch changed the top list
  */
-export function recommendCoffeeShops(
-  shops,
-  userLat,
-  userLng,
-  options = {}
-) {
+export function createShopRanker(userLat, userLng, options = {}) {
   const {
     limit = 5,
     sortBy = 'score',
     openNowOnly = false,
-    route = null
+    route = null,
+    maxDistance = DEFAULT_MAX_DISTANCE,
+    weights = null
   } = options;
 
   const isRouteSearch = !!route;
+  const profile = resolveWeights(weights, isRouteSearch);
+  const selectOrder = COMPARATORS[sortBy] || COMPARATORS.score;
+  const heap = new TopKHeap(limit, withArrivalOrder(selectOrder));
+  const displayOrder = withArrivalOrder(DISPLAY_ORDER[sortBy] || selectOrder);
+  let seq = 0;
 
-  // Filter shops if needed
-  let filtered = shops;
-  if (openNowOnly) {
-    filtered = shops.filter(shop => shop.openNow !== false);
-  }
+  return {
+    add(shops) {
+      const candidates = openNowOnly ? shops.filter(shop => shop.openNow !== false) : shops;
+      const lats = new Float64Array(candidates.length);
+      const lngs = new Float64Array(candidates.length);
+      candidates.forEach((shop, i) => {
+        lats[i] = shop.location.lat;
+        lngs[i] = shop.location.lng;
+      });
+      const distances = distancesFrom(userLat, userLng, lats, lngs);
 
-  // Calculate recommendation score for each shop
-  const withScores = filtered.map(shop => {
-    const distance = calculateDistance(userLat, userLng, shop.location.lat, shop.location.lng);
-    const recommendationScore = calculateRecommendationScore(shop, userLat, userLng, 5000, isRouteSearch);
+      let changed = false;
+      for (let i = 0; i < candidates.length; i++) {
+        const shop = candidates[i];
+        const features = buildFeatures(shop, distances[i], maxDistance, isRouteSearch);
+        const entry = { shop, features, score: scoreFeatures(features, profile), seq: seq++ };
+        changed = heap.offer(entry) || changed;
+      }
+      return changed;
+    },
 
-    return {
-      ...shop,
-      distance,
-      recommendationScore,
-      // Include route-specific info if available
-      ...(isRouteSearch && shop.distanceFromRoute !== undefined && {
-        routeProximityInfo: {
-          distanceFromRoute: shop.distanceFromRoute,
-          distanceFromRouteKm: (shop.distanceFromRoute / 1000).toFixed(1)
-        }
-      })
-    };
-  });
+    results() {
+      return heap.sorted(displayOrder).map(({ shop, features, score }) => ({
+        ...shop,
+        distance: features.distance,
+        recommendationScore: score,
+        // Kept so the display breakdown uses the same inputs (and maxDistance) as the score
+        features,
+        // Include route-specific info if available
+        ...(isRouteSearch && shop.distanceFromRoute !== undefined && {
+          routeProximityInfo: {
+            distanceFromRoute: shop.distanceFromRoute,
+            distanceFromRouteKm: (shop.distanceFromRoute / 1000).toFixed(1)
+          }
+        })
+      }));
+    },
 
-  // Sort based on criteria
-  let sorted;
-  const getDistanceValue = (shop) => {
-    if (isRouteSearch && shop.distanceFromRoute !== undefined) {
-      return shop.distanceFromRoute;
+    size() {
+      return heap.items.length;
     }
-    return shop.distance ?? Number.POSITIVE_INFINITY;
   };
-  switch (sortBy) {
-    case 'rating':
-      sorted = withScores.sort((a, b) => {
-        const ratingDiff = (b.rating || 0) - (a.rating || 0);
-        if (ratingDiff !== 0) return ratingDiff;
-        return getDistanceValue(a) - getDistanceValue(b);
-      });
-      break;
-    case 'distance':
-      sorted = withScores.sort((a, b) => {
-        const distA = getDistanceValue(a);
-        const distB = getDistanceValue(b);
-        const distDiff = distA - distB;
-        // If shops are within 500m of each other, sort by rating instead
-        if (Math.abs(distDiff) < 500) {
-          return (b.rating || 0) - (a.rating || 0);
-        }
-        return distDiff;
-      });
-      break;
-    case 'reviews':
-      sorted = withScores.sort((a, b) => (b.reviewCount || 0) - (a.reviewCount || 0));
-      break;
-    case 'score':
-    default:
-      sorted = withScores.sort((a, b) => b.recommendationScore - a.recommendationScore);
-      break;
-  }
+}
 
-  // Return limited results
-  return sorted.slice(0, limit);
+/**
+ * Recommend top coffee shops based on multiple factors
+ *
+ * @param {Array} shops - Array of coffee shop objects
+ * @param {number} userLat - User's latitude (or route center for route searches)
+ * @param {number} userLng - User's longitude (or route center for route searches)
+ * @param {Object} options - Configuration options
+ * @param {number} options.limit - Maximum number of recommendations (default: 5)
+ * @param {string} options.sortBy - Sort criteria: 'score', 'rating', 'distance', 'reviews' (default: 'score')
+ * @param {boolean} options.openNowOnly - Only return open shops (default: false)
+ * @param {Object} options.route - Route object for route-based searches (optional)
+ * @param {string|Object} options.weights - Weight profile name ('point', 'route') or custom weights (optional)
+ * @returns {Array} - Recommended shops with scores, sorted and limited
+ */
+export function recommendCoffeeShops(
+  shops,
+  userLat,
+  userLng,
+  options = {}
+) {
+  const ranker = createShopRanker(userLat, userLng, options);
+  ranker.add(shops);
+  return ranker.results();
 }
 
 /**
@@ -183,11 +312,23 @@ export function formatShopForDisplay(shop) {
 
 /**
  * Get detailed score breakdown for a shop
+ * Ranked shops carry the features their score was computed from; others are scored
+ * against the default 5km normalization.
  *
  * @param {Object} shop - Coffee shop object
  * @returns {Object} - Score breakdown details
  */
 function getScoreBreakdown(shop) {
+  if (shop.features) {
+    const { ratingScore, reviewCountScore, distanceScore, openNowScore } = shop.features;
+    return {
+      rating: Math.round(ratingScore * 10) / 10,
+      reviews: Math.round(reviewCountScore * 10) / 10,
+      distance: Math.round(distanceScore * 10) / 10,
+      openNow: Math.round(openNowScore * 10) / 10
+    };
+  }
+
   const ratingScore = (shop.rating || 0) * 2;
   const reviewCountScore = Math.min(10, Math.log10((shop.reviewCount || 1) + 1) * 2);
 
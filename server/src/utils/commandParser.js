@@ -0,0 +1,139 @@
+/**
+ * Deterministic parser for simple typed navigation commands.
+ * Handles "from A to B", "navigate to X" and "add a stop at X" without calling Gemini.
+ * Anything it is not sure about returns null so the caller falls back to the LLM.
+ * Results use the same shape as the Gemini extraction result.
+ */
+
+const LOCAL_CONFIDENCE = 0.95;
+const MAX_PLACE_WORDS = 6;
+const MAX_PLACE_LENGTH = 60;
+
+const NAVIGATE_VERBS = '(?:please\\s+)?(?:navigate|go|drive|head|get directions|directions|route|take me|bring me)';
+
+const FROM_TO_PATTERN = new RegExp(`^(?:${NAVIGATE_VERBS}\\s+)?from\\s+(.+?)\\s+to\\s+(.+)$`, 'i');
+const GO_TO_PATTERN = new RegExp(`^${NAVIGATE_VERBS}\\s+to\\s+(.+)$`, 'i');
+const ADD_STOP_PATTERN = /^(?:please\s+)?(?:add|make|insert)\s+(?:a\s+)?stop\s+(?:at|in)\s+(.+)$/i;
+const STOP_AT_PATTERN = /^(?:please\s+)?(?:also\s+)?stop\s+(?:at|in)\s+(.+)$/i;
+const NEAREST_PATTERN = /^(?:the\s+)?(?:nearest|closest|most nearby)\s+(.+)$/i;
+
+// Origins that mean "where I am now" rather than a place to geocode.
+const CURRENT_LOCATION_PATTERN = /^(?:here|my (?:current )?location|(?:my |the )?current location|where i am)$/i;
+
+// Phrases that need positional or relative reasoning - leave those to Gemini.
+const AMBIGUOUS_PATTERN = /\b(?:to|from|and|then|via|through|between|after|before|instead|replace|change|with|near|home|work|house|office|stop)\b/i;
+const PLACE_CHARS_PATTERN = /^[\p{L}\p{N}' .&-]+$/u;
+// Words that mark a phrase as a business or point of interest (Places API) rather than a
+// city, neighborhood or region (hybrid geocoding). Possessives like "Joe's" count too.
+const BUSINESS_CUE_PATTERN = /(?:\b(?:cafe|café|coffee|restaurant|diner|grill|pizza|pizzeria|burger|bar|pub|brewery|bakery|bistro|kitchen|steakhouse|store|shop|market|supermarket|mall|outlet|pharmacy|bank|hotel|motel|inn|resort|casino|gas station|airport|station|terminal|hospital|clinic|museum|gallery|zoo|aquarium|stadium|arena|theater|theatre|cinema|library|university|college|school|gym|church|temple|park|garden|bridge|tower|building|center|centre|plaza|square|memorial|monument|starbucks|mcdonald's|walmart|target|costco|walgreens|cvs|ikea|chipotle|subway|dunkin)\b|\w's\b)/i;
+const STREET_ADDRESS_PATTERN = /^\d+\s+.*\b(?:st|street|ave|avenue|rd|road|blvd|boulevard|dr|drive|ln|lane|way|ct|court|pl|place|hwy|highway|pkwy|parkway|ter|terrace|cir|circle)\b/i;
+
+function cleanText(text) {
+  return String(text || '')
+    .trim()
+    .replace(/\s+/g, ' ')
+    .replace(/[.!?]+$/, '')
+    .trim();
+}
+
+/**
+ * Turn one place phrase into an extraction stop, or null if it is not simple enough.
+ * Street addresses are rejected on purpose: the prompt asks Gemini to verify and
+ * parse them, which a regex cannot do.
+ * Only phrases with a business cue (or "nearest X") are typed as landmarks; bare place
+ * names like "Denver" stay untyped so geocodeLocation uses the hybrid strategy.
+ */
+function buildStop(phrase) {
+  let name = cleanText(phrase);
+  let nearestSearch = false;
+
+  const nearestMatch = name.match(NEAREST_PATTERN);
+  if (nearestMatch) {
+    name = nearestMatch[1];
+    nearestSearch = true;
+  }
+  name = name.replace(/^the\s+/i, '');
+
+  if (!name || name.length > MAX_PLACE_LENGTH) return null;
+  if (name.split(' ').length > MAX_PLACE_WORDS) return null;
+  if (!PLACE_CHARS_PATTERN.test(name)) return null;
+  if (AMBIGUOUS_PATTERN.test(name) || STREET_ADDRESS_PATTERN.test(name)) return null;
+  if (CURRENT_LOCATION_PATTERN.test(name)) return null;
+
+  const isBusiness = nearestSearch || BUSINESS_CUE_PATTERN.test(name);
+
+  return {
+    original: cleanText(phrase),
+    type: isBusiness ? 'landmark' : 'unknown',
+    parsed: {
+      streetNumber: null,
+      streetName: null,
+      city: null,
+      state: null,
+      country: null,
+      postalCode: null,
+      landmark: null,
+      businessName: isBusiness ? name : null
+    },
+    searchQuery: name,
+    confidence: LOCAL_CONFIDENCE,
+    via: false,
+    nearestSearch
+  };
+}
+
+function buildResult(text, commandType, stops, needsCurrentLocation) {
+  return {
+    transcript: text,
+    commandType,
+    needsCurrentLocation,
+    stops,
+    insertPosition: { type: 'append', referenceIndex: null, referenceIndex2: null },
+    source: 'local'
+  };
+}
+
+/**
+ * Parse a typed command without the LLM.
+ * @param {string} text - Typed or pre-transcribed command
+ * @param {Object} currentRoute - Optional current route context
+ * @returns {Object|null} - Extraction result, or null when Gemini should handle it
+ */
+export function parseSimpleCommand(text, currentRoute = null) {
+  const command = cleanText(text);
+  if (!command) return null;
+
+  const fromToMatch = command.match(FROM_TO_PATTERN);
+  if (fromToMatch) {
+    const destination = buildStop(fromToMatch[2]);
+    if (!destination) return null;
+
+    if (CURRENT_LOCATION_PATTERN.test(cleanText(fromToMatch[1]))) {
+      return buildResult(command, 'new_route', [destination], true);
+    }
+
+    const origin = buildStop(fromToMatch[1]);
+    if (!origin) return null;
+    return buildResult(command, 'new_route', [origin, destination], false);
+  }
+
+  const goToMatch = command.match(GO_TO_PATTERN);
+  if (goToMatch) {
+    // With a route already loaded, "go to X" may mean "add X" - that call needs Gemini.
+    if (currentRoute?.stops?.length) return null;
+    const destination = buildStop(goToMatch[1]);
+    if (!destination) return null;
+    return buildResult(command, 'new_route', [destination], true);
+  }
+
+  const addStopMatch = command.match(ADD_STOP_PATTERN) || command.match(STOP_AT_PATTERN);
+  if (addStopMatch) {
+    // Without an existing route "stop at X" is really a new destination; let Gemini decide.
+    if (!currentRoute?.stops?.length) return null;
+    const stop = buildStop(addStopMatch[1]);
+    if (!stop) return null;
+    return buildResult(command, 'add_stop', [stop], false);
+  }
+
+  return null;
+}
@@ -0,0 +1,36 @@
+/**
+ * Limit how many async tasks run at once; extra tasks wait in FIFO order.
+ * @param {number} maxConcurrent - Maximum number of tasks running at the same time
+ * @returns {Function} - limit(fn) runs fn when a slot is free and resolves with its result
+ */
+export function createConcurrencyLimiter(maxConcurrent) {
+  const queue = [];
+  let active = 0;
+
+  const next = () => {
+    if (active >= maxConcurrent || queue.length === 0) return;
+
+    const { fn, resolve, reject } = queue.shift();
+    active += 1;
+    Promise.resolve()
+      .then(fn)
+      .then(resolve, reject)
+      .finally(() => {
+        active -= 1;
+        next();
+      });
+  };
+
+  const limit = (fn) => new Promise((resolve, reject) => {
+    queue.push({ fn, resolve, reject });
+    next();
+  });
+
+  limit.getStats = () => ({
+    maxConcurrent,
+    active,
+    queued: queue.length
+  });
+
+  return limit;
+}
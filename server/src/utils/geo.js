@@ -0,0 +1,130 @@
+/**
+ * Shared geo math. Distances are in meters unless the name says otherwise.
+ *
+ * calculateDistance uses an equirectangular approximation when both points are within
+ * FAST_PATH_MAX_DEGREES of each other (one cosine, no sin/atan2) and the haversine
+ * formula otherwise. Below that span, projecting at the mean latitude stays within
+ * 0.001% of haversine up to 80° latitude (bench-geo.js measures error and timings).
+ */
+
+export const EARTH_RADIUS_M = 6371000;
+export const DEG_TO_RAD = Math.PI / 180;
+export const METERS_PER_DEGREE = EARTH_RADIUS_M * DEG_TO_RAD; // ~111.2km per degree of latitude
+
+const FAST_PATH_MAX_DEGREES = 0.5; // ~55km north-south
+
+export function toRadians(degrees) {
+  return degrees * DEG_TO_RAD;
+}
+
+/**
+ * Great-circle distance using the Haversine formula.
+ * @returns {number} - Distance in meters
+ */
+export function haversineDistance(lat1, lng1, lat2, lng2) {
+  const dLat = (lat2 - lat1) * DEG_TO_RAD;
+  const dLng = (lng2 - lng1) * DEG_TO_RAD;
+  const sinLat = Math.sin(dLat / 2);
+  const sinLng = Math.sin(dLng / 2);
+  const a = sinLat * sinLat + Math.cos(lat1 * DEG_TO_RAD) * Math.cos(lat2 * DEG_TO_RAD) * sinLng * sinLng;
+  return 2 * EARTH_RADIUS_M * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+}
+
+/**
+ * Equirectangular approximation, projected at the mean latitude. Accurate for short
+ * distances; degrades with span and near the poles.
+ * @returns {number} - Distance in meters
+ */
+export function equirectangularDistance(lat1, lng1, lat2, lng2) {
+  const x = (lng2 - lng1) * Math.cos(((lat1 + lat2) / 2) * DEG_TO_RAD);
+  const y = lat2 - lat1;
+  return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+}
+
+function isShortSpan(lat1, lng1, lat2, lng2) {
+  return Math.abs(lat2 - lat1) < FAST_PATH_MAX_DEGREES &&
+    Math.abs(lng2 - lng1) < FAST_PATH_MAX_DEGREES;
+}
+
+/**
+ * Distance between two coordinates: equirectangular for short spans, haversine otherwise.
+ * @param {number} lat1 - Latitude of point 1
+ * @param {number} lng1 - Longitude of point 1
+ * @param {number} lat2 - Latitude of point 2
+ * @param {number} lng2 - Longitude of point 2
+ * @returns {number} - Distance in meters
+ */
+export function calculateDistance(lat1, lng1, lat2, lng2) {
+  return isShortSpan(lat1, lng1, lat2, lng2)
+    ? equirectangularDistance(lat1, lng1, lat2, lng2)
+    : haversineDistance(lat1, lng1, lat2, lng2);
+}
+
+/**
+ * @returns {number} - Distance in kilometers
+ */
+export function calculateDistanceKm(lat1, lng1, lat2, lng2) {
+  return calculateDistance(lat1, lng1, lat2, lng2) / 1000;
+}
+
+/**
+ * True when two coordinates are within `meters` of each other. Points further apart
+ * than the threshold in latitude alone are rejected without any trig.
+ */
+export function isWithinDistance(lat1, lng1, lat2, lng2, meters) {
+  if (Math.abs(lat2 - lat1) * METERS_PER_DEGREE > meters) return false;
+  return calculateDistance(lat1, lng1, lat2, lng2) <= meters;
+}
+
+/**
+ * Initial bearing (compass heading 0-360°) from point 1 to point 2.
+ */
+export function initialBearing(lat1, lng1, lat2, lng2) {
+  const φ1 = lat1 * DEG_TO_RAD;
+  const φ2 = lat2 * DEG_TO_RAD;
+  const Δλ = (lng2 - lng1) * DEG_TO_RAD;
+  const y = Math.sin(Δλ) * Math.cos(φ2);
+  const x = Math.cos(φ1) * Math.sin(φ2) - Math.sin(φ1) * Math.cos(φ2) * Math.cos(Δλ);
+  return (Math.atan2(y, x) / DEG_TO_RAD + 360) % 360;
+}
+
+/**
+ * Distances from one point to many, over parallel typed arrays.
+ * cos(lat) of the origin is computed once; each short-span pair then costs one more cosine.
+ * @param {number} lat - Origin latitude
+ * @param {number} lng - Origin longitude
+ * @param {Float64Array} lats - Target latitudes
+ * @param {Float64Array} lngs - Target longitudes
+ * @param {Float64Array} out - Optional output array (length >= lats.length)
+ * @returns {Float64Array} - Distances in meters
+ */
+export function distancesFrom(lat, lng, lats, lngs, out = new Float64Array(lats.length)) {
+  const cosLat = Math.cos(lat * DEG_TO_RAD);
+  for (let i = 0; i < lats.length; i++) {
+    const targetLat = lats[i];
+    const targetLng = lngs[i];
+    if (isShortSpan(lat, lng, targetLat, targetLng)) {
+      out[i] = equirectangularDistance(lat, lng, targetLat, targetLng);
+    } else {
+      const sinLat = Math.sin((targetLat - lat) * DEG_TO_RAD / 2);
+      const sinLng = Math.sin((targetLng - lng) * DEG_TO_RAD / 2);
+      const a = sinLat * sinLat + cosLat * Math.cos(targetLat * DEG_TO_RAD) * sinLng * sinLng;
+      out[i] = 2 * EARTH_RADIUS_M * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+  }
+  return out;
+}
+
+/**
+ * Lengths of consecutive legs of a path (out[i] = distance from point i to point i + 1).
+ * @param {Float64Array} lats - Path latitudes
+ * @param {Float64Array} lngs - Path longitudes
+ * @param {Float64Array} out - Optional output array (length >= lats.length - 1)
+ * @returns {Float64Array} - Leg lengths in meters
+ */
+export function pathLegLengths(lats, lngs, out = new Float64Array(Math.max(lats.length - 1, 0))) {
+  for (let i = 0; i < lats.length - 1; i++) {
+    out[i] = calculateDistance(lats[i], lngs[i], lats[i + 1], lngs[i + 1]);
+  }
+  return out;
+}
@@ -0,0 +1,100 @@
+/**
+ * Minimal geohash helpers for bucketing coordinates into grid cells.
+ */
+
+const BASE32 = '0123456789bcdefghjkmnpqrstuvwxyz';
+
+/**
+ * Encode a coordinate as a geohash.
+ * @param {number} lat - Latitude
+ * @param {number} lng - Longitude
+ * @param {number} precision - Number of characters (5 ≈ 4.9km × 4.9km cells)
+ * @returns {string} - Geohash
+ */
+export function encodeGeohash(lat, lng, precision) {
+  let latMin = -90;
+  let latMax = 90;
+  let lngMin = -180;
+  let lngMax = 180;
+  let hash = '';
+  let bits = 0;
+  let bitCount = 0;
+  let evenBit = true;
+
+  while (hash.length < precision) {
+    if (evenBit) {
+      const mid = (lngMin + lngMax) / 2;
+      if (lng >= mid) {
+        bits = (bits << 1) | 1;
+        lngMin = mid;
+      } else {
+        bits <<= 1;
+        lngMax = mid;
+      }
+    } else {
+      const mid = (latMin + latMax) / 2;
+      if (lat >= mid) {
+        bits = (bits << 1) | 1;
+        latMin = mid;
+      } else {
+        bits <<= 1;
+        latMax = mid;
+      }
+    }
+    evenBit = !evenBit;
+
+    bitCount += 1;
+    if (bitCount === 5) {
+      hash += BASE32[bits];
+      bits = 0;
+      bitCount = 0;
+    }
+  }
+
+  return hash;
+}
+
+/**
+ * Cell size in degrees for a geohash precision.
+ * @returns {{latDegrees: number, lngDegrees: number}}
+ */
+export function geohashCellSize(precision) {
+  const totalBits = precision * 5;
+  const lngBits = Math.ceil(totalBits / 2);
+  const latBits = Math.floor(totalBits / 2);
+  return {
+    latDegrees: 180 / 2 ** latBits,
+    lngDegrees: 360 / 2 ** lngBits
+  };
+}
+
+/**
+ * List the geohash cells overlapping a circle.
+ * @param {number} lat - Circle center latitude
+ * @param {number} lng - Circle center longitude
+ * @param {number} radiusKm - Circle radius in kilometers
+ * @param {number} precision - Geohash precision
+ * @returns {Array<string>} - Cells covering the circle's bounding box
+ */
+export function geohashesInRadius(lat, lng, radiusKm, precision) {
+  const { latDegrees, lngDegrees } = geohashCellSize(precision);
+  const latRadius = radiusKm / 111.32;
+  const lngRadius = radiusKm / (111.32 * Math.max(Math.cos((lat * Math.PI) / 180), 0.01));
+
+  const minLat = Math.max(lat - latRadius, -90);
+  const maxLat = Math.min(lat + latRadius, 90 - 1e-9);
+  const minLng = lng - lngRadius;
+  const maxLng = lng + lngRadius;
+
+  // Step one cell at a time and always include the far edge, so no overlapping cell is skipped.
+  const cells = new Set();
+  for (let cellLat = minLat; ; cellLat = Math.min(cellLat + latDegrees, maxLat)) {
+    for (let cellLng = minLng; ; cellLng = Math.min(cellLng + lngDegrees, maxLng)) {
+      const wrappedLng = ((cellLng + 540) % 360) - 180;
+      cells.add(encodeGeohash(cellLat, wrappedLng, precision));
+      if (cellLng >= maxLng) break;
+    }
+    if (cellLat >= maxLat) break;
+  }
+  return Array.from(cells);
+}
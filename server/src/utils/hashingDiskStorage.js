@@ -0,0 +1,41 @@
+import crypto from 'crypto';
+import fs from 'fs';
+import path from 'path';
+import { Transform } from 'stream';
+import { pipeline } from 'stream/promises';
+
+/**
+ * multer storage engine that streams each upload to disk and computes its SHA-256
+ * in the same pass. Adds `path`, `size` and `sha256` to req.file.
+ * @param {Object} options
+ * @param {string} options.destination - Directory for uploaded files
+ */
+export function hashingDiskStorage({ destination }) {
+  fs.mkdirSync(destination, { recursive: true });
+
+  return {
+    _handleFile(req, file, cb) {
+      const filePath = path.join(destination, `${Date.now()}-${crypto.randomUUID()}.part`);
+      const hash = crypto.createHash('sha256');
+      let size = 0;
+
+      const hashingStream = new Transform({
+        transform(chunk, encoding, callback) {
+          hash.update(chunk);
+          size += chunk.length;
+          callback(null, chunk);
+        }
+      });
+
+      pipeline(file.stream, hashingStream, fs.createWriteStream(filePath))
+        .then(() => cb(null, { path: filePath, size, sha256: hash.digest('hex') }))
+        .catch((error) => {
+          fs.rm(filePath, { force: true }, () => cb(error));
+        });
+    },
+
+    _removeFile(req, file, cb) {
+      fs.rm(file.path, { force: true }, cb);
+    }
+  };
+}
@@ -0,0 +1,63 @@
+/**
+ * Small in-memory LRU cache with per-entry expiry.
+ * Relies on Map insertion order: the first key is always the least recently used.
+ */
+export class LruCache {
+  /**
+   * @param {number} maxEntries - Maximum number of entries kept in memory
+   */
+  constructor(maxEntries = 500) {
+    this.maxEntries = maxEntries;
+    this.entries = new Map();
+  }
+
+  /**
+   * Get a value and mark it as most recently used.
+   * @param {string} key - Cache key
+   * @returns {*} - Cached value, or undefined if missing or expired
+   */
+  get(key) {
+    const entry = this.entries.get(key);
+    if (!entry) return undefined;
+
+    if (entry.expiresAt <= Date.now()) {
+      this.entries.delete(key);
+      return undefined;
+    }
+
+    this.entries.delete(key);
+    this.entries.set(key, entry);
+    return entry.value;
+  }
+
+  /**
+   * Store a value, evicting the least recently used entry when full.
+   * @param {string} key - Cache key
+   * @param {*} value - Value to store
+   * @param {number} ttlMs - Time to live in milliseconds
+   */
+  set(key, value, ttlMs) {
+    if (this.entries.has(key)) {
+      this.entries.delete(key);
+    }
+
+    this.entries.set(key, { value, expiresAt: Date.now() + ttlMs });
+
+    while (this.entries.size > this.maxEntries) {
+      const oldestKey = this.entries.keys().next().value;
+      this.entries.delete(oldestKey);
+    }
+  }
+
+  delete(key) {
+    return this.entries.delete(key);
+  }
+
+  clear() {
+    this.entries.clear();
+  }
+
+  get size() {
+    return this.entries.size;
+  }
+}
@@ -1,4 +1,5 @@
 import { Client } from '@googlemaps/google-maps-services-js';
+import { calculateDistance as distanceBetween } from './geo.js';
 
 const client = new Client({});
 
@@ -50,22 +51,11 @@ export async function searchNearbyPlaces(location, radius = 5000, type = 'cafe')
 }
 
 /**
- * Calculate distance between two points using Haversine formula
+ * Calculate distance between two points (see utils/geo.js)
  * @param {Object} point1 - { lat: number, lng: number }
  * @param {Object} point2 - { lat: number, lng: number }
  * @returns {number} Distance in meters
  */
 export function calculateDistance(point1, point2) {
-  const R = 6371e3; // Earth's radius in meters
-  const φ1 = (point1.lat * Math.PI) / 180;
-  const φ2 = (point2.lat * Math.PI) / 180;
-  const Δφ = ((point2.lat - point1.lat) * Math.PI) / 180;
-  const Δλ = ((point2.lng - point1.lng) * Math.PI) / 180;
-
-  const a =
-    Math.sin(Δφ / 2) * Math.sin(Δφ / 2) +
-    Math.cos(φ1) * Math.cos(φ2) * Math.sin(Δλ / 2) * Math.sin(Δλ / 2);
-  const c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-  return R * c; // Distance in meters
-}
\ No newline at end of file
+  return distanceBetween(point1.lat, point1.lng, point2.lat, point2.lng);
+}
@@ -0,0 +1,236 @@
+import { DEG_TO_RAD, METERS_PER_DEGREE, calculateDistance, pathLegLengths } from './geo.js';
+
+/**
+ * Route geometry built from the route's overview polyline.
+ * The polyline is decoded once into typed arrays with the cumulative along-route distance
+ * of every vertex, so "point at fraction f" is a binary search and "distance from a point
+ * to the route" measures against the actual road instead of straight chords between stops.
+ * Routes without a polyline (e.g. { origin, destination, waypoints }) fall back to the chords.
+ */
+
+/**
+ * Decode a Google encoded polyline.
+ * @param {string} encoded - Encoded polyline (overview_polyline)
+ * @returns {Array<{lat: number, lng: number}>}
+ */
+export function decodePolyline(encoded) {
+  const points = [];
+  let index = 0;
+  let lat = 0;
+  let lng = 0;
+  while (index < encoded.length) {
+    for (const field of ['lat', 'lng']) {
+      let shift = 0;
+      let result = 0;
+      let byte;
+      do {
+        byte = encoded.charCodeAt(index++) - 63;
+        result |= (byte & 0x1f) << shift;
+        shift += 5;
+      } while (byte >= 0x20);
+      const delta = result & 1 ? ~(result >> 1) : result >> 1;
+      if (field === 'lat') lat += delta;
+      else lng += delta;
+    }
+    points.push({ lat: lat / 1e5, lng: lng / 1e5 });
+  }
+  return points;
+}
+
+/**
+ * Ordered stops of a route, for either the normalized route ({ stops }) or the
+ * { origin, destination, waypoints } shape used by the along-route search.
+ */
+export function getRouteStops(route) {
+  if (Array.isArray(route.stops) && route.stops.length > 0) {
+    return route.stops;
+  }
+  return [route.origin, ...(route.waypoints || []), route.destination].filter(Boolean);
+}
+
+function getEncodedPolyline(route) {
+  const polyline = route.overview_polyline ?? route.polyline;
+  if (typeof polyline === 'string') return polyline;
+  return polyline?.points || polyline?.encodedPolyline || '';
+}
+
+/**
+ * Build the geometry for a route. Call once per route and reuse it for every query.
+ * @param {Object} route - Normalized route (overview_polyline, stops) or { origin, destination, waypoints }
+ * @returns {Object} - { lat, lng, cumulative, length, pointCount, source }
+ */
+export function buildRouteGeometry(route) {
+  const encoded = getEncodedPolyline(route);
+  let points = encoded ? decodePolyline(encoded) : [];
+  let source = 'polyline';
+
+  if (points.length < 2) {
+    points = getRouteStops(route).filter((stop) => Number.isFinite(stop?.lat) && Number.isFinite(stop?.lng));
+    source = 'stops';
+  }
+  if (points.length === 0) {
+    throw new Error('Route has no polyline or stop coordinates');
+  }
+
+  const pointCount = points.length;
+  const lat = new Float64Array(pointCount);
+  const lng = new Float64Array(pointCount);
+  const cumulative = new Float64Array(pointCount);
+
+  for (let i = 0; i < pointCount; i++) {
+    lat[i] = points[i].lat;
+    lng[i] = points[i].lng;
+  }
+  const legs = pathLegLengths(lat, lng);
+  for (let i = 1; i < pointCount; i++) {
+    cumulative[i] = cumulative[i - 1] + legs[i - 1];
+  }
+
+  return {
+    lat,
+    lng,
+    cumulative,
+    length: cumulative[pointCount - 1],
+    pointCount,
+    source
+  };
+}
+
+/**
+ * Point at a given along-route distance.
+ * @param {Object} geometry - From buildRouteGeometry
+ * @param {number} meters - Distance from the start of the route
+ * @returns {{lat: number, lng: number, segmentIndex: number, distanceAlong: number}}
+ */
+export function pointAtDistance(geometry, meters) {
+  const { lat, lng, cumulative, pointCount, length } = geometry;
+  const target = Math.min(Math.max(meters, 0), length);
+
+  if (pointCount === 1) {
+    return { lat: lat[0], lng: lng[0], segmentIndex: 0, distanceAlong: 0 };
+  }
+
+  // Last vertex whose cumulative distance is <= target, capped so a segment follows it
+  let low = 0;
+  let high = pointCount - 2;
+  while (low < high) {
+    const mid = (low + high + 1) >> 1;
+    if (cumulative[mid] <= target) low = mid;
+    else high = mid - 1;
+  }
+
+  const segmentLength = cumulative[low + 1] - cumulative[low];
+  const t = segmentLength > 0 ? (target - cumulative[low]) / segmentLength : 0;
+  return {
+    lat: lat[low] + (lat[low + 1] - lat[low]) * t,
+    lng: lng[low] + (lng[low + 1] - lng[low]) * t,
+    segmentIndex: low,
+    distanceAlong: target
+  };
+}
+
+/**
+ * Point at a fraction of the route's length (0 = origin, 1 = destination).
+ */
+export function pointAtFraction(geometry, fraction) {
+  return pointAtDistance(geometry, fraction * geometry.length);
+}
+
+/**
+ * Evenly spaced points along the route, including both ends.
+ * @param {Object} geometry - From buildRouteGeometry
+ * @param {number} maxSpacing - Maximum along-route distance between points in meters
+ * @returns {Array<{lat: number, lng: number, segmentIndex: number, distanceAlong: number}>}
+ */
+export function samplePointsAlongRoute(geometry, maxSpacing) {
+  const count = Math.max(2, Math.ceil(geometry.length / maxSpacing) + 1);
+  const points = [];
+  for (let i = 0; i < count; i++) {
+    points.push(pointAtDistance(geometry, (geometry.length * i) / (count - 1)));
+  }
+  return points;
+}
+
+/**
+ * Closest point on one polyline segment, in a local equirectangular projection
+ * around the query point (accurate at the few-km scale that matters for proximity).
+ * @returns {{t: number, lat: number, lng: number}} - t is the position along the segment (0-1)
+ */
+export function projectOntoSegment(geometry, segmentIndex, pointLat, pointLng) {
+  const { lat, lng } = geometry;
+  const xScale = Math.cos(pointLat * DEG_TO_RAD);
+  const ax = (lng[segmentIndex] - pointLng) * xScale;
+  const ay = lat[segmentIndex] - pointLat;
+  const dx = (lng[segmentIndex + 1] - lng[segmentIndex]) * xScale;
+  const dy = lat[segmentIndex + 1] - lat[segmentIndex];
+  const lenSq = dx * dx + dy * dy;
+  const t = lenSq > 0 ? Math.min(1, Math.max(0, -(ax * dx + ay * dy) / lenSq)) : 0;
+  return {
+    t,
+    lat: lat[segmentIndex] + dy * t,
+    lng: lng[segmentIndex] + (lng[segmentIndex + 1] - lng[segmentIndex]) * t
+  };
+}
+
+/**
+ * Approximate squared distance in meters² from a point to a segment, used to
+ * compare segments without a haversine per segment.
+ * @param {number} xScale - cos(pointLat), hoisted out of loops over segments
+ */
+export function segmentDistanceSq(geometry, segmentIndex, pointLat, pointLng, xScale) {
+  const { lat, lng } = geometry;
+  const ax = (lng[segmentIndex] - pointLng) * xScale;
+  const ay = lat[segmentIndex] - pointLat;
+  const dx = (lng[segmentIndex + 1] - lng[segmentIndex]) * xScale;
+  const dy = lat[segmentIndex + 1] - lat[segmentIndex];
+  const lenSq = dx * dx + dy * dy;
+  const t = lenSq > 0 ? Math.min(1, Math.max(0, -(ax * dx + ay * dy) / lenSq)) : 0;
+  const x = (ax + dx * t) * METERS_PER_DEGREE;
+  const y = (ay + dy * t) * METERS_PER_DEGREE;
+  return x * x + y * y;
+}
+
+/**
+ * Nearest point on the route to a location.
+ * @param {Object} geometry - From buildRouteGeometry
+ * @param {Object} point - {lat, lng}
+ * @returns {{distance: number, segmentIndex: number, distanceAlong: number, fraction: number, lat: number, lng: number}}
+ *   distance in meters from the point to the route; distanceAlong is where the nearest point sits on the route
+ */
+export function nearestPointOnRoute(geometry, point) {
+  if (geometry.pointCount === 1) {
+    return buildNearestResult(geometry, point, 0, { t: 0, lat: geometry.lat[0], lng: geometry.lng[0] });
+  }
+
+  const xScale = Math.cos(point.lat * DEG_TO_RAD);
+  let bestSegment = 0;
+  let bestDistanceSq = Infinity;
+  for (let i = 0; i < geometry.pointCount - 1; i++) {
+    const distanceSq = segmentDistanceSq(geometry, i, point.lat, point.lng, xScale);
+    if (distanceSq < bestDistanceSq) {
+      bestDistanceSq = distanceSq;
+      bestSegment = i;
+    }
+  }
+
+  return buildNearestResult(
+    geometry,
+    point,
+    bestSegment,
+    projectOntoSegment(geometry, bestSegment, point.lat, point.lng)
+  );
+}
+
+export function buildNearestResult(geometry, point, segmentIndex, closest) {
+  const { cumulative, length } = geometry;
+  const segmentLength = geometry.pointCount > 1 ? cumulative[segmentIndex + 1] - cumulative[segmentIndex] : 0;
+  const distanceAlong = cumulative[segmentIndex] + segmentLength * closest.t;
+  return {
+    distance: calculateDistance(point.lat, point.lng, closest.lat, closest.lng),
+    segmentIndex,
+    distanceAlong,
+    fraction: length > 0 ? distanceAlong / length : 0,
+    lat: closest.lat,
+    lng: closest.lng
+  };
+}
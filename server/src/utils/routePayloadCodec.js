@@ -0,0 +1,67 @@
+import zlib from 'zlib';
+
+/**
+ * Storage codec for history route payloads (history.route_data_json).
+ * New rows store Brotli-compressed JSON as a BLOB; rows written before compression
+ * are plain JSON TEXT. decodeRoutePayload() reads both, keyed on the SQLite value type.
+ */
+
+const BROTLI_QUALITY = Number(process.env.HISTORY_BROTLI_QUALITY || 5);
+
+const stats = {
+  encoded: 0,
+  decoded: 0,
+  legacyDecoded: 0,
+  rawBytes: 0,
+  storedBytes: 0,
+  encodeMs: 0,
+  decodeMs: 0
+};
+
+/**
+ * @param {Object} routeData - Normalized route
+ * @returns {Buffer} - Compressed payload to store as a BLOB
+ */
+export function encodeRoutePayload(routeData) {
+  const started = performance.now();
+  const json = Buffer.from(JSON.stringify(routeData));
+  const compressed = zlib.brotliCompressSync(json, {
+    params: {
+      [zlib.constants.BROTLI_PARAM_MODE]: zlib.constants.BROTLI_MODE_TEXT,
+      [zlib.constants.BROTLI_PARAM_QUALITY]: BROTLI_QUALITY,
+      [zlib.constants.BROTLI_PARAM_SIZE_HINT]: json.length
+    }
+  });
+
+  stats.encoded += 1;
+  stats.rawBytes += json.length;
+  stats.storedBytes += compressed.length;
+  stats.encodeMs += performance.now() - started;
+  return compressed;
+}
+
+/**
+ * @param {Buffer|string} stored - BLOB from encodeRoutePayload, or legacy JSON text
+ * @returns {Object} - Route data
+ */
+export function decodeRoutePayload(stored) {
+  if (typeof stored === 'string') {
+    stats.legacyDecoded += 1;
+    return JSON.parse(stored);
+  }
+
+  const started = performance.now();
+  const route = JSON.parse(zlib.brotliDecompressSync(stored).toString('utf8'));
+  stats.decoded += 1;
+  stats.decodeMs += performance.now() - started;
+  return route;
+}
+
+export function getRoutePayloadCodecStats() {
+  return {
+    ...stats,
+    compressionRatio: stats.storedBytes > 0 ? stats.rawBytes / stats.storedBytes : 0,
+    avgEncodeMs: stats.encoded > 0 ? stats.encodeMs / stats.encoded : 0,
+    avgDecodeMs: stats.decoded > 0 ? stats.decodeMs / stats.decoded : 0
+  };
+}
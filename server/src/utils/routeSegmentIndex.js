@@ -0,0 +1,204 @@
+import {
+  buildNearestResult,
+  nearestPointOnRoute,
+  projectOntoSegment,
+  segmentDistanceSq
+} from './routeGeometry.js';
+import { DEG_TO_RAD, METERS_PER_DEGREE } from './geo.js';
+
+/**
+ * Uniform grid over the segments of a route geometry, for nearest-segment queries.
+ * Each segment is registered in every cell it passes through. A query scans rings of
+ * cells outward from the point's cell and stops once the next ring cannot hold anything
+ * closer than the best segment found, so it only touches segments near the point
+ * instead of every segment of the polyline.
+ */
+
+const DEFAULT_CELL_METERS = 2000;
+const MIN_INDEXED_SEGMENTS = 32; // below this a plain scan is faster than the grid
+
+export class RouteSegmentIndex {
+  /**
+   * @param {Object} geometry - From buildRouteGeometry
+   * @param {Object} options
+   * @param {number} options.cellMeters - Grid cell size (default: 2000m)
+   */
+  constructor(geometry, { cellMeters = DEFAULT_CELL_METERS } = {}) {
+    this.geometry = geometry;
+    this.segmentCount = Math.max(0, geometry.pointCount - 1);
+    this.cells = new Map(); // row * cols + col -> [segmentIndex]
+    this.stats = { queries: 0, segmentsChecked: 0, cellsVisited: 0 };
+
+    if (this.segmentCount < MIN_INDEXED_SEGMENTS) {
+      this.indexed = false;
+      return;
+    }
+    this.indexed = true;
+
+    const { lat, lng } = geometry;
+    let minLat = Infinity;
+    let maxLat = -Infinity;
+    let minLng = Infinity;
+    let maxLng = -Infinity;
+    for (let i = 0; i < geometry.pointCount; i++) {
+      minLat = Math.min(minLat, lat[i]);
+      maxLat = Math.max(maxLat, lat[i]);
+      minLng = Math.min(minLng, lng[i]);
+      maxLng = Math.max(maxLng, lng[i]);
+    }
+
+    // Size longitude cells at the route's highest latitude so every cell is at least
+    // cellMeters wide across the whole route
+    const maxAbsLat = Math.min(Math.max(Math.abs(minLat), Math.abs(maxLat)), 89);
+    this.cellLatDeg = cellMeters / METERS_PER_DEGREE;
+    this.cellLngDeg = cellMeters / (METERS_PER_DEGREE * Math.cos(maxAbsLat * DEG_TO_RAD));
+    this.minLat = minLat;
+    this.minLng = minLng;
+    this.rows = Math.floor((maxLat - minLat) / this.cellLatDeg) + 1;
+    this.cols = Math.floor((maxLng - minLng) / this.cellLngDeg) + 1;
+    this.visitedAt = new Uint32Array(this.segmentCount);
+    this.queryStamp = 0;
+
+    for (let i = 0; i < this.segmentCount; i++) {
+      this.insertSegment(i, cellMeters);
+    }
+  }
+
+  cellRow(latValue) {
+    return Math.floor((latValue - this.minLat) / this.cellLatDeg);
+  }
+
+  cellCol(lngValue) {
+    return Math.floor((lngValue - this.minLng) / this.cellLngDeg);
+  }
+
+  /**
+   * Register a segment in each cell it crosses. Long segments are split into pieces no
+   * longer than a cell, so each piece's bounding box spans at most 2x2 cells.
+   */
+  insertSegment(segmentIndex, cellMeters) {
+    const { lat, lng, cumulative } = this.geometry;
+    const pieces = Math.max(1, Math.ceil((cumulative[segmentIndex + 1] - cumulative[segmentIndex]) / cellMeters));
+    const dLat = (lat[segmentIndex + 1] - lat[segmentIndex]) / pieces;
+    const dLng = (lng[segmentIndex + 1] - lng[segmentIndex]) / pieces;
+
+    for (let p = 0; p < pieces; p++) {
+      const lat1 = lat[segmentIndex] + dLat * p;
+      const lng1 = lng[segmentIndex] + dLng * p;
+      const lat2 = lat1 + dLat;
+      const lng2 = lng1 + dLng;
+      const rowStart = this.cellRow(Math.min(lat1, lat2));
+      const rowEnd = this.cellRow(Math.max(lat1, lat2));
+      const colStart = this.cellCol(Math.min(lng1, lng2));
+      const colEnd = this.cellCol(Math.max(lng1, lng2));
+
+      for (let row = rowStart; row <= rowEnd; row++) {
+        for (let col = colStart; col <= colEnd; col++) {
+          const key = row * this.cols + col;
+          const bucket = this.cells.get(key);
+          if (!bucket) {
+            this.cells.set(key, [segmentIndex]);
+          } else if (bucket[bucket.length - 1] !== segmentIndex) {
+            bucket.push(segmentIndex);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Nearest point on the route to a location.
+   * @param {Object} point - {lat, lng}
+   * @returns {{distance: number, segmentIndex: number, distanceAlong: number, fraction: number, lat: number, lng: number}}
+   *   Same shape as nearestPointOnRoute
+   */
+  nearest(point) {
+    this.stats.queries += 1;
+    if (!this.indexed) {
+      this.stats.segmentsChecked += this.segmentCount;
+      return nearestPointOnRoute(this.geometry, point);
+    }
+
+    if (this.queryStamp === 0xffffffff) {
+      this.visitedAt.fill(0);
+      this.queryStamp = 0;
+    }
+    this.queryStamp += 1;
+
+    const row = this.cellRow(point.lat);
+    const col = this.cellCol(point.lng);
+
+    // Distances are compared in the local projection used by segmentDistanceSq, where a
+    // cell spans cellMeters north-south and this much east-west at the point's latitude
+    const xScale = Math.cos(point.lat * DEG_TO_RAD);
+    const cellLngMeters = this.cellLngDeg * METERS_PER_DEGREE * xScale;
+    const ringMeters = Math.min(this.cellLatDeg * METERS_PER_DEGREE, cellLngMeters);
+
+    // Points outside the grid start at the first ring that reaches it
+    const startRing = Math.max(
+      0,
+      -row, row - this.rows + 1,
+      -col, col - this.cols + 1
+    );
+    const lastRing = Math.max(
+      Math.abs(row) + this.rows,
+      Math.abs(col) + this.cols
+    );
+
+    let bestSegment = -1;
+    let bestDistanceSq = Infinity;
+
+    const visitCell = (r, c) => {
+      if (r < 0 || r >= this.rows || c < 0 || c >= this.cols) return;
+      this.stats.cellsVisited += 1;
+      const bucket = this.cells.get(r * this.cols + c);
+      if (!bucket) return;
+      for (const segmentIndex of bucket) {
+        if (this.visitedAt[segmentIndex] === this.queryStamp) continue;
+        this.visitedAt[segmentIndex] = this.queryStamp;
+        this.stats.segmentsChecked += 1;
+        const distanceSq = segmentDistanceSq(this.geometry, segmentIndex, point.lat, point.lng, xScale);
+        if (distanceSq < bestDistanceSq) {
+          bestDistanceSq = distanceSq;
+          bestSegment = segmentIndex;
+        }
+      }
+    };
+
+    for (let ring = startRing; ring <= lastRing; ring++) {
+      // Cells in this ring and beyond are at least ring - 1 whole cells away from the point
+      const bound = (ring - 1) * ringMeters;
+      if (bestSegment >= 0 && bestDistanceSq <= bound * bound) break;
+
+      if (ring === 0) {
+        visitCell(row, col);
+        continue;
+      }
+      for (let c = col - ring; c <= col + ring; c++) {
+        visitCell(row - ring, c);
+        visitCell(row + ring, c);
+      }
+      for (let r = row - ring + 1; r <= row + ring - 1; r++) {
+        visitCell(r, col - ring);
+        visitCell(r, col + ring);
+      }
+    }
+
+    return buildNearestResult(
+      this.geometry,
+      point,
+      bestSegment,
+      projectOntoSegment(this.geometry, bestSegment, point.lat, point.lng)
+    );
+  }
+
+  getStats() {
+    return {
+      ...this.stats,
+      indexed: this.indexed,
+      segments: this.segmentCount,
+      occupiedCells: this.cells.size,
+      avgSegmentsChecked: this.stats.queries > 0 ? this.stats.segmentsChecked / this.stats.queries : 0
+    };
+  }
+}
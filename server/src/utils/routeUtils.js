@@ -1,32 +1,8 @@
-/**
- * Route utilities for calculating points and distances along navigation routes
- */
+import { calculateDistance } from './geo.js';
 
 /**
- * Calculate distance between two points using Haversine formula (in meters)
- * @param {number} lat1 - Latitude of point 1
- * @param {number} lng1 - Longitude of point 1
- * @param {number} lat2 - Latitude of point 2
- * @param {number} lng2 - Longitude of point 2
- * @returns {number} - Distance in meters
+ * Route utilities for calculating points and distances along navigation routes
  */
-export function calculateDistance(lat1, lng1, lat2, lng2) {
-  const R = 6371; // Earth's radius in kilometers
-  const dLat = toRad(lat2 - lat1);
-  const dLng = toRad(lng2 - lng1);
-  const a =
-    Math.sin(dLat / 2) * Math.sin(dLat / 2) +
-    Math.cos(toRad(lat1)) *
-      Math.cos(toRad(lat2)) *
-      Math.sin(dLng / 2) *
-      Math.sin(dLng / 2);
-  const c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-  return R * c * 1000; // Convert to meters
-}
-
-function toRad(deg) {
-  return (deg * Math.PI) / 180;
-}
 
 /**
  * Calculate intermediate point between two coordinates
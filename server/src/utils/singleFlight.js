@@ -0,0 +1,64 @@
+/**
+ * Single-flight request coalescing.
+ * Concurrent calls with the same key share one in-flight promise; once it settles
+ * the key is released, so nothing is cached beyond the lifetime of the request.
+ */
+export class SingleFlight {
+  /**
+   * @param {Object} [options]
+   * @param {{ start: Function, join: Function }} [options.lanes] - Scheduler lane sharing
+   *   (see outboundLaneSharing) so a shared call runs in the most urgent lane among its callers
+   */
+  constructor(options = {}) {
+    this.lanes = options.lanes || null;
+    this.inFlight = new Map();
+    this.stats = {
+      calls: 0,
+      executed: 0,
+      deduplicated: 0,
+      promoted: 0
+    };
+  }
+
+  /**
+   * Run fn for this key, or join the call already running for it.
+   * Every caller gets its own structured clone of the result so callers that
+   * mutate their copy (e.g. enriching a geocode) cannot affect each other.
+   * @param {string} key - Identity of the upstream request
+   * @param {Function} fn - Starts the upstream request and returns a promise
+   * @returns {Promise<*>}
+   */
+  run(key, fn) {
+    this.stats.calls += 1;
+
+    let flight = this.inFlight.get(key);
+    if (flight) {
+      this.stats.deduplicated += 1;
+      if (flight.group && flight.group.lane !== 'interactive') {
+        this.lanes.join(flight.group);
+        if (flight.group.lane === 'interactive') this.stats.promoted += 1;
+      }
+    } else {
+      this.stats.executed += 1;
+      const started = this.lanes
+        ? this.lanes.start(() => Promise.resolve().then(fn))
+        : { group: null, promise: Promise.resolve().then(fn) };
+      flight = {
+        group: started.group,
+        promise: started.promise.finally(() => {
+          this.inFlight.delete(key);
+        })
+      };
+      this.inFlight.set(key, flight);
+    }
+
+    return flight.promise.then((value) => structuredClone(value));
+  }
+
+  getStats() {
+    return {
+      ...this.stats,
+      inFlight: this.inFlight.size
+    };
+  }
+}
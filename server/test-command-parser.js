@@ -0,0 +1,83 @@
+import { parseSimpleCommand } from './src/utils/commandParser.js';
+
+// Run with: node test-command-parser.js
+console.log('Testing local command parser...\n');
+
+const currentRoute = {
+  stops: [
+    { name: 'Las Vegas', lat: 36.1699, lng: -115.1398 },
+    { name: 'Zion National Park', lat: 37.2982, lng: -113.0263 }
+  ]
+};
+
+let failures = 0;
+
+function check(label, actual, expected) {
+  const ok = JSON.stringify(actual) === JSON.stringify(expected);
+  if (!ok) failures += 1;
+  console.log(`${ok ? '✓' : '✗'} ${label}`);
+  if (!ok) {
+    console.log('   Expected:', JSON.stringify(expected));
+    console.log('   Got:     ', JSON.stringify(actual));
+  }
+}
+
+function summarize(result) {
+  if (!result) return null;
+  return {
+    commandType: result.commandType,
+    needsCurrentLocation: result.needsCurrentLocation,
+    stops: result.stops.map((stop) => ({
+      searchQuery: stop.searchQuery,
+      type: stop.type,
+      businessName: stop.parsed.businessName,
+      nearestSearch: stop.nearestSearch
+    }))
+  };
+}
+
+function place(searchQuery, type = 'unknown', businessName = null, nearestSearch = false) {
+  return { searchQuery, type, businessName, nearestSearch };
+}
+
+console.log('1. Accepted patterns:');
+check('"from A to B" with bare place names',
+  summarize(parseSimpleCommand('Navigate from Las Vegas to Denver')),
+  { commandType: 'new_route', needsCurrentLocation: false, stops: [place('Las Vegas'), place('Denver')] });
+check('"from my location to X"',
+  summarize(parseSimpleCommand('from my current location to Times Square.')),
+  { commandType: 'new_route', needsCurrentLocation: true, stops: [place('Times Square', 'landmark', 'Times Square')] });
+check('"go to X" without a route',
+  summarize(parseSimpleCommand('take me to Starbucks')),
+  { commandType: 'new_route', needsCurrentLocation: true, stops: [place('Starbucks', 'landmark', 'Starbucks')] });
+check('"nearest X" is a business search',
+  summarize(parseSimpleCommand('drive to the nearest gas station')),
+  { commandType: 'new_route', needsCurrentLocation: true, stops: [place('gas station', 'landmark', 'gas station', true)] });
+check('possessive names are businesses',
+  summarize(parseSimpleCommand("go to Joe's")),
+  { commandType: 'new_route', needsCurrentLocation: true, stops: [place("Joe's", 'landmark', "Joe's")] });
+check('"add a stop at X" with a route',
+  summarize(parseSimpleCommand('add a stop at St. George', currentRoute)),
+  { commandType: 'add_stop', needsCurrentLocation: false, stops: [place('St. George')] });
+check('"stop at X" with a route',
+  summarize(parseSimpleCommand('also stop at the closest Walmart', currentRoute)),
+  { commandType: 'add_stop', needsCurrentLocation: false, stops: [place('Walmart', 'landmark', 'Walmart', true)] });
+console.log('');
+
+console.log('2. Falls back to Gemini (null):');
+check('"via"', parseSimpleCommand('go to Denver via Salt Lake City'), null);
+check('"then"', parseSimpleCommand('from Las Vegas to Zion then Bryce'), null);
+check('street address', parseSimpleCommand('navigate to 123 Main Street'), null);
+check('"go to X" with a current route', parseSimpleCommand('go to Denver', currentRoute), null);
+check('"stop at X" without a route', parseSimpleCommand('stop at Starbucks'), null);
+check('relative places', parseSimpleCommand('take me home'), null);
+check('free-form sentence', parseSimpleCommand('I want coffee somewhere on the way'), null);
+check('too many words', parseSimpleCommand('go to the big red barn by the old mill on the hill'), null);
+console.log('');
+
+if (failures > 0) {
+  console.error(`${failures} check(s) failed`);
+  process.exitCode = 1;
+} else {
+  console.log('All tests passed!');
+}
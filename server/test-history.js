@@ -1,4 +1,5 @@
 import { getDatabase } from './src/db/database.js';
+import { decodeRoutePayload } from './src/utils/routePayloadCodec.js';
 
 const db = getDatabase();
 
@@ -19,7 +20,7 @@ if (sample) {
   });
 
   console.log('\n\n=== ROUTE_DATA_JSON (Google Maps 返回的) ===');
-  const route = JSON.parse(sample.route_data_json);
+  const route = decodeRoutePayload(sample.route_data_json);
   if (route.stops) {
     route.stops.forEach((stop, index) => {
       console.log(`\nStop ${index}:`);